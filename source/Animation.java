@@ -0,0 +1,103 @@
+/**
+ * Animation
+ * Runs an animation of a fixed duration on the event dispatch thread, one
+ * frame per display refresh. Each frame is told how far along the
+ * animation is from the time elapsed rather than from the number of frames
+ * shown, so the animation takes as long however slow frames are to draw,
+ * and it is eased in and out so movements start and stop smoothly.
+ * CS 4470 - User Interface Software
+ * apl7@gatech.edu
+ *
+ * @author Alejandrina Patron Lopez
+ * @version 1.0
+ */
+
+import javax.swing.Timer;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+
+public class Animation {
+
+    private final int FRAME_TIME = 16; // About 60 frames per second
+
+    private int duration;
+    private Frame frame;
+    private Timer timer;
+    private long startTime;
+
+    /**
+     * Shows a frame of an animation.
+     */
+    public interface Frame {
+
+        /**
+         * Shows the animation at some point of its progress.
+         *
+         * @param progress eased progress, from 0 at the start to 1 at the end
+         */
+        void show(double progress);
+    }
+
+    /**
+     * Creates a new Animation.
+     *
+     * @param duration duration in milliseconds
+     * @param frame shows each frame
+     */
+    public Animation(int duration, Frame frame) {
+        this.duration = duration;
+        this.frame = frame;
+        timer = new Timer(FRAME_TIME, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                showFrame();
+            }
+        });
+        // Frames that fall behind are dropped rather than queued
+        timer.setCoalesce(true);
+    }
+
+    /**
+     * Starts the animation from the beginning, even if it was running.
+     */
+    public void start() {
+        startTime = System.nanoTime();
+        timer.restart();
+    }
+
+    /**
+     * Stops the animation where it is.
+     */
+    public void stop() {
+        timer.stop();
+    }
+
+    /**
+     * Check if the animation is running.
+     *
+     * @return true if it is
+     */
+    public boolean isRunning() {
+        return timer.isRunning();
+    }
+
+    private void showFrame() {
+        double t = (System.nanoTime() - startTime) / 1e6 / duration;
+        if (t >= 1) {
+            timer.stop();
+            frame.show(1);
+        } else {
+            frame.show(ease(t));
+        }
+    }
+
+    /**
+     * Eases a linear progress in and out.
+     *
+     * @param t progress, from 0 to 1
+     * @return eased progress, from 0 to 1
+     */
+    public static double ease(double t) {
+        return t < 0.5 ? 4 * t * t * t : 1 - 4 * (1 - t) * (1 - t) * (1 - t);
+    }
+}
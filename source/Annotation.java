@@ -43,7 +43,17 @@ public interface Annotation {
     public void setInkColor(Color color);
 
     /**
-     * Save an annotation's previous coordinates for dragging reference.
+     * Moves the annotation by the given offset while it is being dragged.
+     * Only the offset is stored, so this takes constant time.
+     *
+     * @param dx offset from where the annotation was when the drag started
+     * @param dy offset from where the annotation was when the drag started
+     */
+    public void setTranslation(int dx, int dy);
+
+    /**
+     * Adds the current translation to the annotation's coordinates, once the
+     * drag is done.
      */
-    public void savePrevCoordinates();
+    public void commitTranslation();
 }
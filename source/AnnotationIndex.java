@@ -0,0 +1,226 @@
+/**
+ * AnnotationIndex
+ * Uniform grid over the back of a photo that records which annotations
+ * touch each cell, so clicks and selection gestures only look at the
+ * annotations near them.
+ * CS 4470 - User Interface Software
+ * apl7@gatech.edu
+ *
+ * @author Alejandrina Patron Lopez
+ * @version 1.0
+ */
+
+import java.awt.Polygon;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class AnnotationIndex {
+
+    private final int CELL_SIZE = 64;
+    private final byte OUTSIDE = 0;
+    private final byte PARTIAL = 1;
+    private final byte INSIDE = 2;
+
+    // Annotations touching each cell, keyed by the cell's column and row
+    private Map<Long, List<Annotation>> cells = new HashMap<Long, List<Annotation>>();
+    // Cells each annotation was added to, so it can be removed again
+    private Map<Annotation, CellList> cellsOf = new IdentityHashMap<Annotation, CellList>();
+
+    /**
+     * Adds an annotation with its current coordinates.
+     *
+     * @param annotation
+     */
+    public void add(Annotation annotation) {
+        if (cellsOf.containsKey(annotation)) remove(annotation);
+        cellsOf.put(annotation, new CellList());
+        if (annotation instanceof PolyLine) {
+            PolyLine line = (PolyLine)annotation;
+            for (int i = 0; i < line.size(); i++) {
+                addSegment(line, i);
+            }
+        } else {
+            PostIt postIt = (PostIt)annotation;
+            addArea(annotation, postIt.getX(), postIt.getY(),
+                postIt.getX() + postIt.getWidth(), postIt.getY() + postIt.getHeight());
+        }
+    }
+
+    /**
+     * Indexes the segment ending at a line's last point, right after the
+     * point was added.
+     *
+     * @param line
+     */
+    public void pointAdded(PolyLine line) {
+        if (!cellsOf.containsKey(line)) add(line);
+        else addSegment(line, line.size() - 1);
+    }
+
+    /**
+     * Removes an annotation, e.g. when it is deleted or before it moves.
+     *
+     * @param annotation
+     */
+    public void remove(Annotation annotation) {
+        CellList keys = cellsOf.remove(annotation);
+        if (keys == null) return;
+        for (int i = 0; i < keys.size; i++) {
+            List<Annotation> cell = cells.get(keys.keys[i]);
+            cell.remove(annotation);
+            if (cell.isEmpty()) cells.remove(keys.keys[i]);
+        }
+    }
+
+    /**
+     * Indexes an annotation again after its coordinates changed.
+     *
+     * @param annotation
+     */
+    public void update(Annotation annotation) {
+        remove(annotation);
+        add(annotation);
+    }
+
+    /**
+     * Finds the annotations touching the given area. Annotations that merely
+     * share a cell with the area may be returned too.
+     *
+     * @param area
+     * @return annotations, each returned once
+     */
+    public Set<Annotation> query(Rectangle area) {
+        Set<Annotation> result = new LinkedHashSet<Annotation>();
+        int firstColumn = Math.floorDiv(area.x, CELL_SIZE);
+        int lastColumn = Math.floorDiv(area.x + area.width, CELL_SIZE);
+        int firstRow = Math.floorDiv(area.y, CELL_SIZE);
+        int lastRow = Math.floorDiv(area.y + area.height, CELL_SIZE);
+        if ((long)(lastColumn - firstColumn + 1) * (lastRow - firstRow + 1) > cells.size()) {
+            // Larger than the indexed area, so visiting the cells is cheaper
+            for (Map.Entry<Long, List<Annotation>> entry : cells.entrySet()) {
+                int column = (int)(entry.getKey() >> 32);
+                int row = (int)(long)entry.getKey();
+                if (column >= firstColumn && column <= lastColumn && row >= firstRow && row <= lastRow) {
+                    result.addAll(entry.getValue());
+                }
+            }
+            return result;
+        }
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                List<Annotation> cell = cells.get(key(column, row));
+                if (cell != null) result.addAll(cell);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Finds the annotations that lie completely inside a lasso.
+     *
+     * @param lasso closed outline drawn around the annotations
+     * @return annotations inside the lasso
+     */
+    public List<Annotation> queryInside(Polygon lasso) {
+        Rectangle lassoBounds = lasso.getBounds();
+        List<Annotation> result = new ArrayList<Annotation>();
+        // Points in cells completely inside or outside the lasso don't have
+        // to be tested against it
+        int firstColumn = Math.floorDiv(lassoBounds.x, CELL_SIZE);
+        int firstRow = Math.floorDiv(lassoBounds.y, CELL_SIZE);
+        int columns = Math.floorDiv(lassoBounds.x + lassoBounds.width, CELL_SIZE) - firstColumn + 1;
+        int rows = Math.floorDiv(lassoBounds.y + lassoBounds.height, CELL_SIZE) - firstRow + 1;
+        byte[] coverage = new byte[columns * rows];
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                Rectangle cell = new Rectangle((firstColumn + column) * CELL_SIZE,
+                    (firstRow + row) * CELL_SIZE, CELL_SIZE, CELL_SIZE);
+                if (lasso.contains(cell)) coverage[row * columns + column] = INSIDE;
+                else if (lasso.intersects(cell)) coverage[row * columns + column] = PARTIAL;
+                else coverage[row * columns + column] = OUTSIDE;
+            }
+        }
+        for (Annotation a : query(lassoBounds)) {
+            if (a instanceof PolyLine) {
+                PolyLine line = (PolyLine)a;
+                if (line.size() == 0 || !lassoBounds.contains(line.getBounds())) continue;
+                boolean inside = true;
+                for (int i = 0; i < line.size() && inside; i++) {
+                    int x = line.getX(i);
+                    int y = line.getY(i);
+                    int column = Math.floorDiv(x, CELL_SIZE) - firstColumn;
+                    int row = Math.floorDiv(y, CELL_SIZE) - firstRow;
+                    byte c = coverage[row * columns + column];
+                    inside = c == INSIDE || (c == PARTIAL && lasso.contains(x, y));
+                }
+                if (inside) result.add(a);
+            } else {
+                PostIt postIt = (PostIt)a;
+                if (lasso.contains(postIt.getX(), postIt.getY(), postIt.getWidth(), postIt.getHeight())) {
+                    result.add(a);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds a line to the cells covered by the segment ending at the given
+     * point.
+     */
+    private void addSegment(PolyLine line, int i) {
+        int from = Math.max(0, i - 1);
+        addArea(line, Math.min(line.getX(from), line.getX(i)), Math.min(line.getY(from), line.getY(i)),
+            Math.max(line.getX(from), line.getX(i)), Math.max(line.getY(from), line.getY(i)));
+    }
+
+    /**
+     * Adds an annotation to every cell overlapping the given area.
+     */
+    private void addArea(Annotation annotation, int minX, int minY, int maxX, int maxY) {
+        CellList keys = cellsOf.get(annotation);
+        for (int row = Math.floorDiv(minY, CELL_SIZE); row <= Math.floorDiv(maxY, CELL_SIZE); row++) {
+            for (int column = Math.floorDiv(minX, CELL_SIZE); column <= Math.floorDiv(maxX, CELL_SIZE); column++) {
+                long key = key(column, row);
+                List<Annotation> cell = cells.get(key);
+                if (cell == null) {
+                    cell = new ArrayList<Annotation>(2);
+                    cells.put(key, cell);
+                }
+                // An annotation only ever gets appended, so it is already in
+                // the cell if it was the last one added
+                if (!cell.isEmpty() && cell.get(cell.size() - 1) == annotation) continue;
+                cell.add(annotation);
+                keys.add(key);
+            }
+        }
+    }
+
+    /**
+     * Get the key of the cell at the given column and row.
+     */
+    private static long key(int column, int row) {
+        return ((long)column << 32) | (row & 0xffffffffL);
+    }
+
+    /**
+     * Growable list of cell keys.
+     */
+    private static class CellList {
+
+        private long[] keys = new long[4];
+        private int size = 0;
+
+        private void add(long key) {
+            if (size == keys.length) keys = Arrays.copyOf(keys, 2 * size);
+            keys[size++] = key;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/**
+ * FilteredPhotos
+ * The photos of a PhotoLibrary selected by a TagQuery, in library order, as
+ * a read-only list. The result is computed once from the library's tag
+ * index, and then kept up to date one photo at a time: when a photo is
+ * added, removed or has its tags changed, only that photo is checked again.
+ * Tag changes made to many photos at once update the list once.
+ * Looking up a photo by position, or the position of a photo, takes
+ * logarithmic time.
+ * CS 4470 - User Interface Software
+ * apl7@gatech.edu
+ *
+ * @author Alejandrina Patron Lopez
+ * @version 1.0
+ */
+
+import java.util.AbstractList;
+import java.util.BitSet;
+
+public class FilteredPhotos extends AbstractList<Photo> {
+
+    private PhotoLibrary library;
+    private TagQuery query = new TagQuery();
+    private PhotoIdSet ids = new PhotoIdSet();
+
+    /**
+     * Creates a new FilteredPhotos, showing every photo until a query is set.
+     *
+     * @param library library the photos are taken from
+     */
+    public FilteredPhotos(PhotoLibrary library) {
+        this.library = library;
+        setQuery(query);
+    }
+
+    /**
+     * Sets the query selecting the photos, and computes its result.
+     *
+     * @param query
+     */
+    public void setQuery(TagQuery query) {
+        this.query = query;
+        ids.set(library.findIds(query.getRequired(), query.getExcluded()));
+    }
+
+    /**
+     * Get the query selecting the photos.
+     *
+     * @return query
+     */
+    public TagQuery getQuery() {
+        return query;
+    }
+
+    /**
+     * Checks again whether a photo is selected, after it was added to the
+     * library or its tags changed.
+     *
+     * @param photo
+     * @return true if the photo was added to or removed from the list
+     */
+    public boolean photoChanged(Photo photo) {
+        if (query.matches(photo)) return ids.add(photo.getId());
+        return ids.remove(photo.getId());
+    }
+
+    /**
+     * Checks again whether many photos are selected, after their tags
+     * changed, updating the list once for all of them.
+     *
+     * @param photoIds identifiers of the photos
+     * @return true if any photo was added to or removed from the list
+     */
+    public boolean photosChanged(BitSet photoIds) {
+        BitSet added = new BitSet();
+        BitSet removed = new BitSet();
+        for (int id = photoIds.nextSetBit(0); id >= 0; id = photoIds.nextSetBit(id + 1)) {
+            Photo photo = library.getById(id);
+            if (photo == null) continue;
+            boolean matches = query.matches(photo);
+            if (matches && !ids.contains(id)) added.set(id);
+            else if (!matches && ids.contains(id)) removed.set(id);
+        }
+        if (!added.isEmpty()) ids.addAll(added);
+        if (!removed.isEmpty()) ids.removeAll(removed);
+        return !added.isEmpty() || !removed.isEmpty();
+    }
+
+    /**
+     * Get the identifiers of the photos in the list.
+     *
+     * @return identifiers, which may be modified
+     */
+    public BitSet getIds() {
+        return ids.toBitSet();
+    }
+
+    /**
+     * Removes a photo that was removed from the library.
+     *
+     * @param photo
+     * @return true if the photo was in the list
+     */
+    public boolean photoRemoved(Photo photo) {
+        return ids.remove(photo.getId());
+    }
+
+    /**
+     * Get the number of photos in the list before a photo, whether it is in
+     * the list or not.
+     *
+     * @param photo
+     * @return position the photo has, or would have, in the list
+     */
+    public int positionOf(Photo photo) {
+        return ids.rank(photo.getId());
+    }
+
+    @Override
+    public Photo get(int index) {
+        if (index < 0 || index >= ids.size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + ids.size());
+        }
+        return library.getById(ids.select(index));
+    }
+
+    @Override
+    public int size() {
+        return ids.size();
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        if (!(o instanceof Photo)) return -1;
+        Photo photo = (Photo)o;
+        if (!ids.contains(photo.getId()) || library.getById(photo.getId()) != photo) return -1;
+        return ids.rank(photo.getId());
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        return indexOf(o);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+}
@@ -0,0 +1,31 @@
+/**
+ * GestureAction
+ * CS 4470 - User Interface Software
+ * apl7@gatech.edu
+ *
+ * @author Alejandrina Patron Lopez
+ * @version 1.0
+ */
+
+public enum GestureAction {
+    NEXT ("next"),
+    PREVIOUS ("previous"),
+    TAG ("tag"),
+    DELETE ("delete"),
+    SELECT ("select");
+
+    private String actionName;
+
+    GestureAction(String actionName) {
+        this.actionName = actionName;
+    }
+
+    /**
+     * Get GestureAction's name
+     *
+     * @return name of GestureAction
+     */
+    public String getActionName() {
+        return actionName;
+    }
+}
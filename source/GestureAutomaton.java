@@ -0,0 +1,307 @@
+/**
+ * GestureAutomaton
+ * Matches direction vectors against a whole set of gestures at once, one
+ * direction at a time, so a gesture can be recognized while it is being
+ * drawn. Every gesture is a sequence of direction classes with a few
+ * directions of slack at both ends, e.g. "^.{0,2}+[ECS]+[WDS]+.{0,2}+$".
+ * The gestures are compiled into a single deterministic automaton, so each
+ * direction costs one table lookup however many gestures there are. Its
+ * states are built as they are first reached, since building all of them
+ * up front can take exponentially many.
+ * CS 4470 - User Interface Software
+ * apl7@gatech.edu
+ *
+ * @author Alejandrina Patron Lopez
+ * @version 1.0
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class GestureAutomaton {
+
+    private static final String DIRECTIONS = "NSEWABCD";
+    private static final int SYMBOLS = DIRECTIONS.length() + 1; // Last one is anything else
+    private static final int ANY = (1 << SYMBOLS) - 1;
+    private static final int[] SYMBOL_OF = new int[128];
+    private static final Pattern GESTURE = Pattern.compile("\\^(?:\\.\\{0,(\\d+)\\}(\\+?))?"
+        + "((?:(?:[A-Z]|\\[[A-Z]+\\])\\+?)+)(?:\\.\\{0,(\\d+)\\}\\+?)?\\$");
+    private static final Pattern DIRECTION = Pattern.compile("([A-Z]|\\[[A-Z]+\\])(\\+?)");
+    private final int MAX_STATES = 4096;
+
+    static {
+        Arrays.fill(SYMBOL_OF, SYMBOLS - 1);
+        for (int i = 0; i < DIRECTIONS.length(); i++) {
+            SYMBOL_OF[DIRECTIONS.charAt(i)] = i;
+        }
+    }
+
+    // Nondeterministic automaton the gestures are written as: each state
+    // has edges to other states, labeled with the symbols they take
+    private List<int[]> edgeTargets = new ArrayList<int[]>();
+    private List<int[]> edgeSymbols = new ArrayList<int[]>();
+    private int[] gestureOf = new int[16]; // Gesture each state accepts, or -1
+
+    // Deterministic automaton built from it: each of its states is a set
+    // of states of the nondeterministic one
+    private List<long[]> sets = new ArrayList<long[]>();
+    private Map<StateSet, Integer> ids = new HashMap<StateSet, Integer>();
+    private int[] next = new int[0]; // Next state for each state and symbol, or -1
+    private int[] match = new int[0]; // First gesture each state accepts, or -1
+    private long[] start;
+    private int generation = 0; // Changes whenever the states are thrown away
+
+    /**
+     * Creates an automaton recognizing the given gestures. When several
+     * gestures match, the one given first wins.
+     *
+     * @param gestures gesture patterns, as in Gestures
+     */
+    public GestureAutomaton(String... gestures) {
+        Matcher[] parsed = new Matcher[gestures.length];
+        int maxLeading = 0;
+        for (int g = 0; g < gestures.length; g++) {
+            parsed[g] = GESTURE.matcher(gestures[g]);
+            if (!parsed[g].matches()) {
+                throw new IllegalArgumentException("Unsupported gesture: " + gestures[g]);
+            }
+            maxLeading = Math.max(maxLeading, slack(parsed[g].group(1)));
+        }
+        // States 0 to maxLeading count the directions taken by leading slack
+        for (int i = 0; i <= maxLeading; i++) {
+            addState(-1);
+            if (i > 0) addEdge(i - 1, i, ANY);
+        }
+        for (int g = 0; g < gestures.length; g++) {
+            int leading = slack(parsed[g].group(1));
+            // Possessive slack always takes as many directions as it can
+            boolean possessive = !"".equals(parsed[g].group(2));
+            int[] from = new int[possessive ? 1 : leading + 1];
+            for (int i = 0; i < from.length; i++) {
+                from[i] = possessive ? leading : i;
+            }
+            Matcher direction = DIRECTION.matcher(parsed[g].group(3));
+            while (direction.find()) {
+                int state = addState(-1);
+                int symbols = symbolsOf(direction.group(1));
+                for (int f : from) {
+                    addEdge(f, state, symbols);
+                }
+                if (!direction.group(2).isEmpty()) addEdge(state, state, symbols);
+                from = new int[] {state};
+            }
+            // Trailing slack can take the last few directions
+            int last = from[0];
+            gestureOf[last] = g;
+            for (int i = 0; i < slack(parsed[g].group(4)); i++) {
+                int state = addState(g);
+                addEdge(last, state, ANY);
+                last = state;
+            }
+        }
+        start = new long[(edgeTargets.size() + 63) / 64];
+        start[0] = 1L; // Nothing taken by the leading slack yet
+    }
+
+    /**
+     * Get the number of directions a slack of ".{0,n}" takes at most.
+     */
+    private static int slack(String n) {
+        return n == null ? 0 : Integer.parseInt(n);
+    }
+
+    /**
+     * Get the symbols of a direction class, e.g. "[ECS]", as a bit mask.
+     */
+    private static int symbolsOf(String directionClass) {
+        int symbols = 0;
+        for (char c : directionClass.toCharArray()) {
+            if (c != '[' && c != ']') symbols |= 1 << SYMBOL_OF[c];
+        }
+        return symbols;
+    }
+
+    private int addState(int gesture) {
+        edgeTargets.add(new int[0]);
+        edgeSymbols.add(new int[0]);
+        int state = edgeTargets.size() - 1;
+        if (state == gestureOf.length) gestureOf = Arrays.copyOf(gestureOf, 2 * state);
+        gestureOf[state] = gesture;
+        return state;
+    }
+
+    private void addEdge(int from, int to, int symbols) {
+        int[] targets = Arrays.copyOf(edgeTargets.get(from), edgeTargets.get(from).length + 1);
+        int[] labels = Arrays.copyOf(edgeSymbols.get(from), edgeSymbols.get(from).length + 1);
+        targets[targets.length - 1] = to;
+        labels[labels.length - 1] = symbols;
+        edgeTargets.set(from, targets);
+        edgeSymbols.set(from, labels);
+    }
+
+    /**
+     * Get the deterministic state for a set of states, adding it if it
+     * doesn't exist yet.
+     *
+     * @return deterministic state
+     */
+    private int stateOf(long[] set) {
+        StateSet key = new StateSet(set);
+        Integer id = ids.get(key);
+        if (id != null) return id;
+        if (sets.size() == MAX_STATES) {
+            // Gestures drawn from now on build the states they need again
+            sets.clear();
+            ids.clear();
+            generation++;
+        }
+        int state = sets.size();
+        sets.add(set);
+        ids.put(key, state);
+        if (match.length == state) {
+            match = Arrays.copyOf(match, Math.max(16, 2 * state));
+            next = Arrays.copyOf(next, match.length * SYMBOLS);
+        }
+        Arrays.fill(next, state * SYMBOLS, (state + 1) * SYMBOLS, -1);
+        match[state] = -1;
+        for (int s = nextState(set, 0); s >= 0; s = nextState(set, s + 1)) {
+            int g = gestureOf[s];
+            if (g >= 0 && (match[state] < 0 || g < match[state])) match[state] = g;
+        }
+        return state;
+    }
+
+    /**
+     * Get the set of states reached from a set of states on a symbol.
+     */
+    private long[] step(long[] set, int symbol) {
+        long[] target = new long[set.length];
+        for (int s = nextState(set, 0); s >= 0; s = nextState(set, s + 1)) {
+            int[] targets = edgeTargets.get(s);
+            int[] labels = edgeSymbols.get(s);
+            for (int e = 0; e < targets.length; e++) {
+                if ((labels[e] & (1 << symbol)) != 0) {
+                    target[targets[e] / 64] |= 1L << (targets[e] % 64);
+                }
+            }
+        }
+        return target;
+    }
+
+    /**
+     * Get the first state in a set at or after the given one.
+     *
+     * @return state, or -1 if there is none
+     */
+    private static int nextState(long[] set, int from) {
+        for (int w = from / 64; w < set.length; w++) {
+            long bits = set[w];
+            if (w == from / 64) bits &= -1L << (from % 64);
+            if (bits != 0) return 64 * w + Long.numberOfTrailingZeros(bits);
+        }
+        return -1;
+    }
+
+    /**
+     * Get the number of states of the deterministic automaton built so far.
+     *
+     * @return number of states
+     */
+    public int getStateCount() {
+        return sets.size();
+    }
+
+    /**
+     * Starts matching a new direction vector.
+     *
+     * @return run of the automaton
+     */
+    public Run start() {
+        return new Run();
+    }
+
+    /**
+     * Matching of one direction vector, fed one direction at a time.
+     */
+    public class Run {
+
+        private long[] set = start;
+        private int state = -1;
+        private int stateGeneration;
+
+        /**
+         * Forgets all directions fed so far.
+         */
+        public void reset() {
+            set = start;
+            state = -1;
+        }
+
+        /**
+         * Advances every gesture by one direction.
+         *
+         * @param symbol direction, as in GestureRecognizer
+         */
+        public void step(char symbol) {
+            int s = symbol < 128 ? SYMBOL_OF[symbol] : SYMBOLS - 1;
+            int from = currentState();
+            int to = next[from * SYMBOLS + s];
+            if (to < 0) {
+                to = stateOf(GestureAutomaton.this.step(set, s));
+                // Only remembered if the states weren't thrown away meanwhile
+                if (generation == stateGeneration) next[from * SYMBOLS + s] = to;
+            }
+            set = sets.get(to);
+            state = to;
+            stateGeneration = generation;
+        }
+
+        /**
+         * Get the gesture the directions fed so far match.
+         *
+         * @return index of the first gesture matched, or -1
+         */
+        public int getMatch() {
+            return match[currentState()];
+        }
+
+        /**
+         * Get the deterministic state of the run, adding it again if the
+         * states were thrown away.
+         */
+        private int currentState() {
+            if (state < 0 || stateGeneration != generation) {
+                state = stateOf(set);
+                stateGeneration = generation;
+            }
+            return state;
+        }
+    }
+
+    /**
+     * Set of states, usable as a map key.
+     */
+    private static class StateSet {
+
+        private long[] states;
+
+        public StateSet(long[] states) {
+            this.states = states;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof StateSet && Arrays.equals(states, ((StateSet)o).states);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(states);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/**
+ * GestureBenchmark
+ * Compares the accuracy and latency of the gesture engines on synthetic
+ * strokes: the template of each gesture drawn at random sizes, positions
+ * and slants with uneven mouse sampling, with and without jitter, and
+ * random scribbles that shouldn't be recognized at all.
+ * Run with: java GestureBenchmark [strokes per gesture]
+ * CS 4470 - User Interface Software
+ * apl7@gatech.edu
+ *
+ * @author Alejandrina Patron Lopez
+ * @version 1.0
+ */
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class GestureBenchmark {
+
+    private static final String[] NAMES = {"right-angle", "left-angle", "lowercase-phi",
+        "up-arrow", "down-arrow", "s", "w", "circle"};
+    private static final int[][] TEMPLATES = {Gestures.RIGHT_ANGLE_TEMPLATE,
+        Gestures.LEFT_ANGLE_TEMPLATE, Gestures.LOWERCASE_PHI_TEMPLATE, Gestures.UP_ARROW_TEMPLATE,
+        Gestures.DOWN_ARROW_TEMPLATE, Gestures.S_TEMPLATE, Gestures.W_TEMPLATE,
+        Gestures.CIRCLE_TEMPLATE};
+
+    public static void main(String[] args) {
+        int strokes = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        for (double jitter : new double[] {0, 1}) {
+            Random random = new Random(4470);
+            int[][][] samples = new int[NAMES.length][strokes][];
+            for (int g = 0; g < NAMES.length; g++) {
+                for (int i = 0; i < strokes; i++) {
+                    samples[g][i] = draw(TEMPLATES[g], jitter, random);
+                }
+            }
+            int[][] scribbles = new int[strokes][];
+            for (int i = 0; i < strokes; i++) {
+                scribbles[i] = scribble(random);
+            }
+            System.out.println("Jitter of " + jitter + " px");
+            for (GestureEngine engine : GestureEngine.values()) {
+                GestureRecognizer recognizer = new GestureRecognizer(engine,
+                    GestureLibrary.createDefault());
+                // Warm up, then measure
+                run(recognizer, samples, null);
+                long[] nanos = new long[NAMES.length * strokes];
+                int[] correct = run(recognizer, samples, nanos);
+                Arrays.sort(nanos);
+                int falsePositives = 0;
+                for (int[] points : scribbles) {
+                    if (recognize(recognizer, points, false) != null) falsePositives++;
+                }
+                System.out.println("  " + engine.getEngineName() + " engine");
+                int total = 0;
+                for (int g = 0; g < NAMES.length; g++) {
+                    System.out.printf("    %-14s %5.1f%%%n", NAMES[g], 100.0 * correct[g] / strokes);
+                    total += correct[g];
+                }
+                System.out.printf("    %-14s %5.1f%%%n", "all", 100.0 * total / nanos.length);
+                System.out.printf("    %-14s %5.1f%% recognized%n", "scribbles",
+                    100.0 * falsePositives / strokes);
+                System.out.printf("    latency per stroke: median %.1f us, 99th percentile %.1f us%n",
+                    nanos[nanos.length / 2] / 1000.0, nanos[nanos.length * 99 / 100] / 1000.0);
+            }
+        }
+    }
+
+    /**
+     * Recognizes every sample, feeding the points as the mouse would.
+     *
+     * @param nanos time taken for each stroke, or null
+     * @return number of samples of each gesture recognized correctly
+     */
+    private static int[] run(GestureRecognizer recognizer, int[][][] samples, long[] nanos) {
+        int[] correct = new int[samples.length];
+        int n = 0;
+        for (int g = 0; g < samples.length; g++) {
+            boolean flipped = NAMES[g].equals("circle");
+            for (int[] points : samples[g]) {
+                long start = System.nanoTime();
+                GestureBinding gesture = recognize(recognizer, points, flipped);
+                if (nanos != null) nanos[n++] = System.nanoTime() - start;
+                if (gesture != null && gesture.getName().equals(NAMES[g])) correct[g]++;
+            }
+        }
+        return correct;
+    }
+
+    /**
+     * Feeds a stroke to a recognizer the way the mouse would.
+     */
+    private static GestureBinding recognize(GestureRecognizer recognizer, int[] points,
+            boolean flipped) {
+        recognizer.startGesture(points[0], points[1]);
+        for (int i = 2; i < points.length; i += 2) {
+            recognizer.addPoint(points[i], points[i + 1]);
+        }
+        return recognizer.finishGesture(flipped);
+    }
+
+    /**
+     * Draws a template the way a hand would, as x0, y0, x1, y1, ...
+     */
+    private static int[] draw(int[] template, double jitter, Random random) {
+        double scale = 0.75 + 2.5 * random.nextDouble();
+        double aspect = 0.8 + 0.4 * random.nextDouble();
+        double slant = Math.toRadians(20 * random.nextDouble() - 10);
+        double offsetX = 20 + 400 * random.nextDouble();
+        double offsetY = 20 + 400 * random.nextDouble();
+        double cos = Math.cos(slant);
+        double sin = Math.sin(slant);
+        int[] points = new int[64];
+        int size = 0;
+        for (int i = 2; i < template.length; i += 2) {
+            double x0 = template[i - 2];
+            double y0 = template[i - 1];
+            double x1 = template[i];
+            double y1 = template[i + 1];
+            double length = Math.hypot(x1 - x0, y1 - y0) * scale;
+            // Mouse events arrive every few pixels
+            for (double t = 0; t < length; t += 1 + 6 * random.nextDouble()) {
+                double x = (x0 + (x1 - x0) * t / length) * scale * aspect;
+                double y = (y0 + (y1 - y0) * t / length) * scale;
+                if (size + 2 > points.length) points = Arrays.copyOf(points, 2 * points.length);
+                x += jitter * random.nextGaussian();
+                y += jitter * random.nextGaussian();
+                points[size++] = (int)Math.round(offsetX + x * cos - y * sin);
+                points[size++] = (int)Math.round(offsetY + x * sin + y * cos);
+            }
+        }
+        double x = template[template.length - 2] * scale * aspect;
+        double y = template[template.length - 1] * scale;
+        points = Arrays.copyOf(points, size + 2);
+        points[size++] = (int)Math.round(offsetX + x * cos - y * sin);
+        points[size++] = (int)Math.round(offsetY + x * sin + y * cos);
+        return points;
+    }
+
+    /**
+     * Draws a random stroke of a few straight pieces.
+     */
+    private static int[] scribble(Random random) {
+        int[] template = new int[2 * (3 + random.nextInt(8))];
+        for (int i = 0; i < template.length; i++) {
+            template[i] = random.nextInt(100);
+        }
+        return draw(template, 0, random);
+    }
+}
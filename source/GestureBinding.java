@@ -0,0 +1,97 @@
+/**
+ * GestureBinding
+ * A gesture together with the action it triggers.
+ * CS 4470 - User Interface Software
+ * apl7@gatech.edu
+ *
+ * @author Alejandrina Patron Lopez
+ * @version 1.0
+ */
+
+public class GestureBinding {
+
+    private String name;
+    private boolean flipped;
+    private GestureAction action;
+    private Tag tag;
+    private String pattern;
+    private int[] template;
+
+    /**
+     * Creates a new GestureBinding.
+     *
+     * @param name name of the gesture
+     * @param flipped true if the gesture is drawn on the back of photos,
+     * false if it is drawn on the front
+     * @param action action the gesture triggers
+     * @param tag tag toggled by a TAG action, or null
+     * @param pattern direction pattern, as in Gestures
+     * @param template template stroke as x0, y0, x1, y1, ..., or null
+     */
+    public GestureBinding(String name, boolean flipped, GestureAction action, Tag tag,
+            String pattern, int[] template) {
+        if (action == GestureAction.TAG && tag == null) {
+            throw new IllegalArgumentException("No tag to toggle for " + name);
+        }
+        this.name = name;
+        this.flipped = flipped;
+        this.action = action;
+        this.tag = tag;
+        this.pattern = pattern;
+        this.template = template;
+    }
+
+    /**
+     * Get gesture's name.
+     *
+     * @return name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Check if the gesture is drawn on the back of photos.
+     *
+     * @return true if drawn on the back, false if on the front
+     */
+    public boolean isFlipped() {
+        return flipped;
+    }
+
+    /**
+     * Get the action the gesture triggers.
+     *
+     * @return action
+     */
+    public GestureAction getAction() {
+        return action;
+    }
+
+    /**
+     * Get the tag a TAG action toggles.
+     *
+     * @return tag, or null
+     */
+    public Tag getTag() {
+        return tag;
+    }
+
+    /**
+     * Get gesture's direction pattern.
+     *
+     * @return pattern
+     */
+    public String getPattern() {
+        return pattern;
+    }
+
+    /**
+     * Get gesture's template stroke.
+     *
+     * @return template as x0, y0, x1, y1, ..., or null
+     */
+    public int[] getTemplate() {
+        return template;
+    }
+}
@@ -0,0 +1,28 @@
+/**
+ * GestureEngine
+ * CS 4470 - User Interface Software
+ * apl7@gatech.edu
+ *
+ * @author Alejandrina Patron Lopez
+ * @version 1.0
+ */
+
+public enum GestureEngine {
+    DIRECTIONS ("directions"),
+    TEMPLATES ("templates");
+
+    private String engineName;
+
+    GestureEngine(String engineName) {
+        this.engineName = engineName;
+    }
+
+    /**
+     * Get GestureEngine's name
+     *
+     * @return name of GestureEngine
+     */
+    public String getEngineName() {
+        return engineName;
+    }
+}
@@ -0,0 +1,217 @@
+/**
+ * GestureLibrary
+ * The gestures the application recognizes and the actions they trigger.
+ * Besides the built-in gestures, a library can be loaded from a text file
+ * with one gesture per line:
+ *
+ *   # side  name         action      pattern                       template
+ *   front   right-angle  next        ^.{0,2}+[ECS]+[WDS]+.{0,2}+$  0,0 60,40 0,80
+ *   front   up-arrow     tag:Travel  ^.{0,2}+[NBE]+[ECS]+.{0,2}+$  0,80 40,0 80,80
+ *   back    circle       select      ^.{0,2}+[ECB]+[SCD]+[WAD]+[NAB]+[ECB].{0,2}+$
+ *
+ * The side is front or back, the action is one of the GestureActions, with
+ * the tag to toggle after "tag:", and the template points are optional.
+ * Gestures listed first win when several match.
+ * CS 4470 - User Interface Software
+ * apl7@gatech.edu
+ *
+ * @author Alejandrina Patron Lopez
+ * @version 1.0
+ */
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class GestureLibrary {
+
+    private List<GestureBinding> bindings = new ArrayList<GestureBinding>();
+
+    /**
+     * Adds a gesture, which loses to the gestures added before it.
+     *
+     * @param binding
+     */
+    public void add(GestureBinding binding) {
+        bindings.add(binding);
+    }
+
+    /**
+     * Get the gestures drawn on one side of the photos, in order.
+     *
+     * @param flipped true for the back of the photos, false for the front
+     * @return gestures
+     */
+    public List<GestureBinding> getBindings(boolean flipped) {
+        List<GestureBinding> result = new ArrayList<GestureBinding>();
+        for (GestureBinding binding : bindings) {
+            if (binding.isFlipped() == flipped) result.add(binding);
+        }
+        return result;
+    }
+
+    /**
+     * Get all gestures, in order.
+     *
+     * @return gestures
+     */
+    public List<GestureBinding> getBindings() {
+        return Collections.unmodifiableList(bindings);
+    }
+
+    /**
+     * Creates a library with the built-in gestures.
+     *
+     * @return library
+     */
+    public static GestureLibrary createDefault() {
+        GestureLibrary library = new GestureLibrary();
+        library.add(new GestureBinding("lowercase-phi", false, GestureAction.DELETE, null,
+            Gestures.LOWERCASE_PHI, Gestures.LOWERCASE_PHI_TEMPLATE));
+        library.add(new GestureBinding("right-angle", false, GestureAction.NEXT, null,
+            Gestures.RIGHT_ANGLE, Gestures.RIGHT_ANGLE_TEMPLATE));
+        library.add(new GestureBinding("left-angle", false, GestureAction.PREVIOUS, null,
+            Gestures.LEFT_ANGLE, Gestures.LEFT_ANGLE_TEMPLATE));
+        library.add(new GestureBinding("up-arrow", false, GestureAction.TAG, Tag.TRAVEL,
+            Gestures.UP_ARROW, Gestures.UP_ARROW_TEMPLATE));
+        library.add(new GestureBinding("down-arrow", false, GestureAction.TAG, Tag.FAMILY,
+            Gestures.DOWN_ARROW, Gestures.DOWN_ARROW_TEMPLATE));
+        library.add(new GestureBinding("w", false, GestureAction.TAG, Tag.WORK,
+            Gestures.W, Gestures.W_TEMPLATE));
+        library.add(new GestureBinding("s", false, GestureAction.TAG, Tag.SCHOOL,
+            Gestures.S, Gestures.S_TEMPLATE));
+        library.add(new GestureBinding("circle", true, GestureAction.SELECT, null,
+            Gestures.CIRCLE, Gestures.CIRCLE_TEMPLATE));
+        library.add(new GestureBinding("lowercase-phi", true, GestureAction.DELETE, null,
+            Gestures.LOWERCASE_PHI, Gestures.LOWERCASE_PHI_TEMPLATE));
+        return library;
+    }
+
+    /**
+     * Loads the library the user chose: the file named by the
+     * photoalbum.gestureLibrary system property, or the gestures file in the
+     * .photoalbum directory in the user's home directory. The built-in
+     * gestures are used if there is no such file.
+     *
+     * @return library
+     * @throws IOException if the file can't be read or has an invalid line
+     */
+    public static GestureLibrary loadDefault() throws IOException {
+        String path = System.getProperty("photoalbum.gestureLibrary");
+        File file = path != null ? new File(path) : new File(System.getProperty("user.home"),
+            ".photoalbum" + File.separator + "gestures");
+        if (!file.isFile()) return createDefault();
+        return load(file);
+    }
+
+    /**
+     * Loads a library from a file.
+     *
+     * @param file
+     * @return library
+     * @throws IOException if the file can't be read or has an invalid line
+     */
+    public static GestureLibrary load(File file) throws IOException {
+        GestureLibrary library = new GestureLibrary();
+        BufferedReader in = new BufferedReader(new FileReader(file));
+        try {
+            String line;
+            for (int n = 1; (line = in.readLine()) != null; n++) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                try {
+                    library.add(parse(line.split("\\s+")));
+                } catch (IllegalArgumentException ex) {
+                    throw new IOException(file + ":" + n + ": " + ex.getMessage());
+                }
+            }
+        } finally {
+            in.close();
+        }
+        // Catch invalid patterns and templates now rather than when
+        // recognizing
+        try {
+            new GestureAutomaton(patterns(library.getBindings(false)));
+            new GestureAutomaton(patterns(library.getBindings(true)));
+            TemplateMatcher matcher = new TemplateMatcher();
+            for (GestureBinding binding : library.bindings) {
+                if (binding.getTemplate() != null) matcher.addTemplate(binding.getTemplate());
+            }
+        } catch (IllegalArgumentException ex) {
+            throw new IOException(file + ": " + ex.getMessage());
+        }
+        return library;
+    }
+
+    /**
+     * Get the direction patterns of some gestures.
+     *
+     * @param bindings
+     * @return patterns, in the same order
+     */
+    public static String[] patterns(List<GestureBinding> bindings) {
+        String[] patterns = new String[bindings.size()];
+        for (int i = 0; i < patterns.length; i++) {
+            patterns[i] = bindings.get(i).getPattern();
+        }
+        return patterns;
+    }
+
+    /**
+     * Parses the fields of a line of a library file.
+     */
+    private static GestureBinding parse(String[] fields) {
+        if (fields.length < 4) {
+            throw new IllegalArgumentException("Expected side, name, action and pattern");
+        }
+        boolean flipped;
+        if (fields[0].equalsIgnoreCase("front")) flipped = false;
+        else if (fields[0].equalsIgnoreCase("back")) flipped = true;
+        else throw new IllegalArgumentException("Unknown side " + fields[0]);
+
+        String actionName = fields[2];
+        Tag tag = null;
+        int colon = actionName.indexOf(':');
+        if (colon >= 0) {
+            tag = tagNamed(actionName.substring(colon + 1));
+            actionName = actionName.substring(0, colon);
+        }
+        GestureAction action = null;
+        for (GestureAction a : GestureAction.values()) {
+            if (a.getActionName().equalsIgnoreCase(actionName)) action = a;
+        }
+        if (action == null) throw new IllegalArgumentException("Unknown action " + actionName);
+
+        int[] template = null;
+        if (fields.length > 4) {
+            template = new int[2 * (fields.length - 4)];
+            for (int i = 4; i < fields.length; i++) {
+                String[] point = fields[i].split(",");
+                if (point.length != 2) throw new IllegalArgumentException("Bad point " + fields[i]);
+                try {
+                    template[2 * (i - 4)] = Integer.parseInt(point[0]);
+                    template[2 * (i - 4) + 1] = Integer.parseInt(point[1]);
+                } catch (NumberFormatException ex) {
+                    throw new IllegalArgumentException("Bad point " + fields[i]);
+                }
+            }
+        }
+        return new GestureBinding(fields[1], flipped, action, tag, fields[3], template);
+    }
+
+    /**
+     * Get the tag with the given name.
+     */
+    private static Tag tagNamed(String name) {
+        for (Tag tag : Tag.values()) {
+            if (tag.getTagName().equalsIgnoreCase(name) || tag.name().equalsIgnoreCase(name)) {
+                return tag;
+            }
+        }
+        throw new IllegalArgumentException("Unknown tag " + name);
+    }
+}
@@ -8,9 +8,10 @@
  */
 
 import java.awt.Point;
-import java.util.List;
-import java.util.regex.Pattern;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 public class GestureRecognizer {
 
@@ -23,21 +24,214 @@ public class GestureRecognizer {
     public static final String SE = "C";
     public static final String SW = "D";
 
-    private Pattern rightAngle, leftAngle, lowercasePhi, upArrow, downArrow, s, w, circle;
+    // Confidence below which the template engine doesn't recognize a gesture
+    private final float MIN_CONFIDENCE = 0.75f;
 
+    private GestureEngine engine;
+    // Gestures drawn on the front and on the back of photos
+    private List<GestureBinding> gestures, flippedGestures;
+    private GestureAutomaton automaton, flippedAutomaton;
+    private GestureAutomaton.Run run, flippedRun;
+    // Template engine's matchers, and the gestures of their templates
+    private TemplateMatcher templateMatcher, flippedTemplateMatcher;
+    private List<GestureBinding> templateGestures, flippedTemplateGestures;
+    // State of the gesture being drawn
+    private StringBuilder directionVector = new StringBuilder();
+    private int[] points = new int[256]; // As x0, y0, x1, y1, ...
+    private int size = 0;
+    private int prevX, prevY;
+    private boolean started = false;
+    private float confidence = 0;
+    private String warning; // Why the user's settings couldn't all be used, or null
 
     /**
-     * Creates a new GestureRecognizer.
+     * Creates a new GestureRecognizer for the user's gesture library, or the
+     * built-in gestures if it can't be loaded, using the engine named by the
+     * photoalbum.gestures system property, or the directions engine if it
+     * isn't set.
      */
     public GestureRecognizer() {
-        rightAngle = Pattern.compile(Gestures.RIGHT_ANGLE);
-        leftAngle = Pattern.compile(Gestures.LEFT_ANGLE);
-        lowercasePhi = Pattern.compile(Gestures.LOWERCASE_PHI);
-        upArrow = Pattern.compile(Gestures.UP_ARROW);
-        downArrow = Pattern.compile(Gestures.DOWN_ARROW);
-        s = Pattern.compile(Gestures.S);
-        w = Pattern.compile(Gestures.W);
-        circle = Pattern.compile(Gestures.CIRCLE);
+        String name = System.getProperty("photoalbum.gestures",
+            GestureEngine.DIRECTIONS.getEngineName());
+        GestureEngine engine = engineNamed(name);
+        if (engine == null) {
+            engine = GestureEngine.DIRECTIONS;
+            warning = "Unknown gesture engine " + name + ", using " + engine.getEngineName();
+        }
+        GestureLibrary library;
+        try {
+            library = GestureLibrary.loadDefault();
+        } catch (IOException ex) {
+            library = GestureLibrary.createDefault();
+            warning = (warning == null ? "" : warning + "; ")
+                + ex.getMessage() + ", using the built-in gestures";
+        }
+        init(engine, library);
+    }
+
+    /**
+     * Creates a new GestureRecognizer.
+     *
+     * @param engine engine gestures are recognized with
+     * @param library gestures to recognize
+     */
+    public GestureRecognizer(GestureEngine engine, GestureLibrary library) {
+        init(engine, library);
+    }
+
+    /**
+     * Sets up recognizing a library's gestures with an engine.
+     */
+    private void init(GestureEngine engine, GestureLibrary library) {
+        this.engine = engine;
+        gestures = library.getBindings(false);
+        flippedGestures = library.getBindings(true);
+        automaton = new GestureAutomaton(GestureLibrary.patterns(gestures));
+        flippedAutomaton = new GestureAutomaton(GestureLibrary.patterns(flippedGestures));
+        run = automaton.start();
+        flippedRun = flippedAutomaton.start();
+        if (engine == GestureEngine.TEMPLATES) {
+            templateGestures = new ArrayList<GestureBinding>();
+            flippedTemplateGestures = new ArrayList<GestureBinding>();
+            templateMatcher = createTemplateMatcher(gestures, templateGestures);
+            flippedTemplateMatcher = createTemplateMatcher(flippedGestures, flippedTemplateGestures);
+        }
+    }
+
+    /**
+     * Creates a template matcher for the gestures that have a template.
+     *
+     * @param templateGestures filled with the gestures in the order of their
+     * templates
+     */
+    private static TemplateMatcher createTemplateMatcher(List<GestureBinding> gestures,
+            List<GestureBinding> templateGestures) {
+        TemplateMatcher matcher = new TemplateMatcher();
+        for (GestureBinding gesture : gestures) {
+            if (gesture.getTemplate() == null) continue;
+            matcher.addTemplate(gesture.getTemplate());
+            templateGestures.add(gesture);
+        }
+        return matcher;
+    }
+
+    /**
+     * Get the engine with the given name, or null if there is none.
+     */
+    private static GestureEngine engineNamed(String name) {
+        for (GestureEngine engine : GestureEngine.values()) {
+            if (engine.getEngineName().equalsIgnoreCase(name)) return engine;
+        }
+        return null;
+    }
+
+    /**
+     * Get the engine gestures are recognized with.
+     *
+     * @return engine
+     */
+    public GestureEngine getEngine() {
+        return engine;
+    }
+
+    /**
+     * Get the reason the engine or library the user chose couldn't be used,
+     * to be shown on the status bar.
+     *
+     * @return warning, or null if the user's choices are used
+     */
+    public String getWarning() {
+        return warning;
+    }
+
+    /**
+     * Starts recognizing a new gesture.
+     *
+     * @param x first point of the gesture
+     * @param y first point of the gesture
+     */
+    public void startGesture(int x, int y) {
+        directionVector.setLength(0);
+        run.reset();
+        flippedRun.reset();
+        size = 0;
+        appendPoint(x, y);
+        prevX = x;
+        prevY = y;
+        started = true;
+    }
+
+    /**
+     * Adds the next point of the gesture being drawn, advancing all gestures
+     * at once.
+     *
+     * @param x
+     * @param y
+     */
+    public void addPoint(int x, int y) {
+        if (!started) {
+            startGesture(x, y);
+            return;
+        }
+        if (engine == GestureEngine.TEMPLATES) {
+            appendPoint(x, y);
+            return;
+        }
+        int length = directionVector.length();
+        appendDirections(prevX, prevY, x, y, directionVector);
+        for (int i = length; i < directionVector.length(); i++) {
+            run.step(directionVector.charAt(i));
+            flippedRun.step(directionVector.charAt(i));
+        }
+        prevX = x;
+        prevY = y;
+    }
+
+    /**
+     * Finishes the gesture being drawn.
+     *
+     * @param flipped true if the gesture was drawn on the back of a photo
+     * @return matched gesture, or null if none were matched
+     */
+    public GestureBinding finishGesture(boolean flipped) {
+        started = false;
+        if (engine == GestureEngine.TEMPLATES) {
+            TemplateMatcher matcher = flipped ? flippedTemplateMatcher : templateMatcher;
+            matcher.recognize(points, size);
+            confidence = matcher.getConfidence();
+            if (confidence < MIN_CONFIDENCE) return null;
+            return (flipped ? flippedTemplateGestures : templateGestures).get(matcher.getMatch());
+        }
+        return directionsMatch(flipped ? flippedRun : run, flipped);
+    }
+
+    /**
+     * Get how sure the recognizer was of the last gesture it finished. The
+     * directions engine is either sure or doesn't match anything.
+     *
+     * @return confidence, from 0 to 1
+     */
+    public float getConfidence() {
+        return confidence;
+    }
+
+    /**
+     * Stores a point of the gesture being drawn.
+     */
+    private void appendPoint(int x, int y) {
+        if (2 * size + 2 > points.length) points = Arrays.copyOf(points, 2 * points.length);
+        points[2 * size] = x;
+        points[2 * size + 1] = y;
+        size++;
+    }
+
+    /**
+     * Get the direction vector of the gesture being drawn.
+     *
+     * @return directionVector
+     */
+    public CharSequence getDirectionVector() {
+        return directionVector;
     }
 
     /**
@@ -47,32 +241,33 @@ public class GestureRecognizer {
      * @return directionVector
      */
     public String buildDirectionVector(PolyLine gesture) {
-        ArrayList<Integer> xCoords = gesture.getXList();
-        ArrayList<Integer> yCoords = gesture.getYList();
-        String directionVector = "";
-        if (xCoords.size() <= 1) return directionVector;
-        int prevX, prevY, currX, currY, diffX, diffY;
-        for (int i = 1; i < xCoords.size(); i++) {
-            prevX = xCoords.get(i - 1);
-            prevY = yCoords.get(i - 1);
-            currX = xCoords.get(i);
-            currY = yCoords.get(i);
-            diffX = prevX - currX;
-            diffY = prevY - currY;
-            if (diffX == 0) {
-                if (diffY < 0) directionVector += S;
-                else if (diffY > 0) directionVector += N;
-            }
-            if (prevY == 0) {
-                if (diffX < 0) directionVector += E;
-                else if (diffX > 0) directionVector += W;
-            }
-            if (diffX > 0 && diffY > 0) directionVector += NW;
-            if (diffX > 0 && diffY < 0) directionVector += SW;
-            if (diffX < 0 && diffY > 0) directionVector += NE;
-            if (diffX < 0 && diffY < 0) directionVector += SE;
+        StringBuilder directionVector = new StringBuilder();
+        for (int i = 1; i < gesture.size(); i++) {
+            appendDirections(gesture.getX(i - 1), gesture.getY(i - 1),
+                gesture.getX(i), gesture.getY(i), directionVector);
         }
-        return directionVector;
+        return directionVector.toString();
+    }
+
+    /**
+     * Appends the directions of a single segment of a gesture.
+     */
+    private static void appendDirections(int prevX, int prevY, int currX, int currY,
+            StringBuilder directionVector) {
+        int diffX = prevX - currX;
+        int diffY = prevY - currY;
+        if (diffX == 0) {
+            if (diffY < 0) directionVector.append(S);
+            else if (diffY > 0) directionVector.append(N);
+        }
+        if (prevY == 0) {
+            if (diffX < 0) directionVector.append(E);
+            else if (diffX > 0) directionVector.append(W);
+        }
+        if (diffX > 0 && diffY > 0) directionVector.append(NW);
+        if (diffX > 0 && diffY < 0) directionVector.append(SW);
+        if (diffX < 0 && diffY > 0) directionVector.append(NE);
+        if (diffX < 0 && diffY < 0) directionVector.append(SE);
     }
 
     /**
@@ -80,30 +275,22 @@ public class GestureRecognizer {
      *
      * @param directionVector
      * @param flipped
-     * @return matched gesture, or "" if none were matched
+     * @return matched gesture, or null if none were matched
      */
-    public String matchGesture(String directionVector, boolean flipped) {
-        if (flipped && circle.matcher(directionVector).find()) {
-            return Gestures.CIRCLE;
-        }
-        if (lowercasePhi.matcher(directionVector).find()) {
-            return Gestures.LOWERCASE_PHI;
+    public GestureBinding matchGesture(String directionVector, boolean flipped) {
+        GestureAutomaton.Run run = (flipped ? flippedAutomaton : automaton).start();
+        for (int i = 0; i < directionVector.length(); i++) {
+            run.step(directionVector.charAt(i));
         }
-        if (!flipped) {
-            if (rightAngle.matcher(directionVector).find()) {
-                return Gestures.RIGHT_ANGLE;
-            } else if (leftAngle.matcher(directionVector).find()) {
-                 return Gestures.LEFT_ANGLE;
-            } else if (upArrow.matcher(directionVector).find()) {
-                return Gestures.UP_ARROW;
-            } else if (downArrow.matcher(directionVector).find()) {
-                return Gestures.DOWN_ARROW;
-            } else if (w.matcher(directionVector).find()) {
-                return Gestures.W;
-            } else if (s.matcher(directionVector).find()) {
-                return Gestures.S;
-            }
-        }
-        return "";
+        return directionsMatch(run, flipped);
+    }
+
+    /**
+     * Get the gesture a run of an automaton matched.
+     */
+    private GestureBinding directionsMatch(GestureAutomaton.Run run, boolean flipped) {
+        int match = run.getMatch();
+        confidence = match < 0 ? 0 : 1;
+        return match < 0 ? null : (flipped ? flippedGestures : gestures).get(match);
     }
 }
@@ -18,4 +18,17 @@ public final class Gestures {
     public static final String W = "^.{0,2}+[ECS]+[NBE]+[ECS]+[NBE]+.{0,2}+$";
     public static final String CIRCLE = "^.{0,2}+[ECB]+[SCD]+[WAD]+[NAB]+[ECB].{0,2}+$";
 
+    // Template strokes for the template engine, as x0, y0, x1, y1, ...
+    public static final int[] RIGHT_ANGLE_TEMPLATE = {0, 0, 60, 40, 0, 80};
+    public static final int[] LEFT_ANGLE_TEMPLATE = {60, 0, 0, 40, 60, 80};
+    public static final int[] LOWERCASE_PHI_TEMPLATE = {40, 0, 20, 20, 15, 45, 30, 60, 55, 55,
+        65, 35, 60, 15, 40, 5, 25, 20, 30, 60, 35, 100};
+    public static final int[] UP_ARROW_TEMPLATE = {0, 80, 40, 0, 80, 80};
+    public static final int[] DOWN_ARROW_TEMPLATE = {0, 0, 40, 80, 80, 0};
+    public static final int[] S_TEMPLATE = {60, 10, 30, 0, 5, 15, 10, 35, 40, 45, 60, 60,
+        50, 80, 20, 85, 0, 75};
+    public static final int[] W_TEMPLATE = {0, 0, 20, 80, 40, 20, 60, 80, 80, 0};
+    public static final int[] CIRCLE_TEMPLATE = {15, 15, 50, 0, 85, 15, 100, 50, 85, 85,
+        50, 100, 15, 85, 0, 50, 15, 15, 50, 0};
+
 }
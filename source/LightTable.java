@@ -11,37 +11,43 @@ import java.awt.*;
 import javax.swing.*;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Set;
 import java.awt.event.*;
 import javax.swing.BorderFactory;
 import javax.swing.border.Border;
-import javax.swing.Timer;
 
 public class LightTable extends JComponent {
 
     // Constants
     private final String CENTER = BorderLayout.CENTER;
     private final String SOUTH = BorderLayout.SOUTH;
-    private final int ANIMATION_TIME = 125;
 
     private PhotoAlbum photoAlbum;
     private ViewMode viewMode;
-    private PhotoComponent currentPhoto;
+    private Photo currentPhoto;
     private int currentImgIndex = -1;
-    private List<ThumbnailComponent> thumbnails;
-    private List<PhotoComponent> photoComponents;
+    private PhotoLibrary library = new PhotoLibrary();
+    private FilteredPhotos shownPhotos = new FilteredPhotos(library); // Photos in the grid
+    private PhotoIdSet selectedPhotos = new PhotoIdSet(); // Includes the current photo
+    private Photo selectionAnchor; // Photo shift-click ranges start from
+    private Point lassoStart; // Where the lasso is being dragged from, or null
+    private PhotoComponent photoComponent; // Shows the current photo
     private JPanel photoPanel;
-    private JPanel thumbnailPanel;
+    private JComponent thumbnailPanel; // Either thumbnailGrid or magnetPanel
+    private ThumbnailGrid thumbnailGrid;
     private JScrollPane thumbnailScrollPane;
+    private MagnetPanel magnetPanel;
     private Color inkColor;
     private AnnotationMode annotationMode;
     private Border border;
     private double currZoom = 1.0;
     private boolean magnetMode = false;
     private List<Magnet> magnets;
-    private int thumbnailOffset = 0;
-    private Timer timer;
-    private int numOfIterations = 0;
+    private ThumbnailCache thumbnailCache = new ThumbnailCache();
+    private ThumbnailStore thumbnailStore = new ThumbnailStore(thumbnailCache);
+    private PhotoStore photoStore = new PhotoStore();
+    private PhotoPrefetcher prefetcher = new PhotoPrefetcher(photoStore);
 
 
     /**
@@ -56,178 +62,262 @@ public class LightTable extends JComponent {
         this.setBackground(Color.white);
         this.viewMode = viewMode;
         this.photoAlbum = photoAlbum;
-        thumbnails = new ArrayList<ThumbnailComponent>();
-        photoComponents = new ArrayList<PhotoComponent>();
         magnets = new ArrayList<Magnet>();
         border = BorderFactory.createMatteBorder(3, 3, 3, 3, Color.yellow);
+        createPanels();
         updatePanel();
     }
 
     /**
-     * Adds an image to the LightTable. Method is called when the user imports
-     * a photo
+     * Adds a batch of imported photos to the LightTable, updating the panel
+     * once for the whole batch. The last photo of the batch becomes the
+     * current photo.
      *
-     * @param img photo to be added to the LightTable
+     * @param photos photos decoded by the PhotoImporter
      */
-    public void addImage(Image img) {
-        if (img != null) {
-            PhotoComponent photoComponent = new PhotoComponent(img, this);
-            photoComponent.setAnnotationMode(annotationMode);
-            photoComponent.setInkColor(inkColor);
-            currentPhoto = photoComponent;
-            photoComponents.add(photoComponent);
-            ThumbnailComponent thumbnail = new ThumbnailComponent(photoComponent);
-            thumbnail.updateScaleFactor(currZoom);
-            thumbnails.add(thumbnail);
-            if (currentImgIndex >= 0) thumbnails.get(currentImgIndex).setBorder(BorderFactory.createEmptyBorder());
-            currentImgIndex = photoComponents.size() - 1;
+    public void addImages(List<PhotoImporter.ImportedPhoto> photos) {
+        if (photos.isEmpty()) return;
+        int first = library.size();
+        int firstShown = shownPhotos.size();
+        for (PhotoImporter.ImportedPhoto imported : photos) {
+            Photo photo = library.add(imported.getFile(), imported.getWidth(), imported.getHeight());
+            // Thumbnails decoded during import don't have to be read again
+            if (imported.getThumbnail() != null) thumbnailStore.put(photo, imported.getThumbnail());
+            // New photos come last in the library, so they are appended
+            shownPhotos.photoChanged(photo);
         }
-        photoAlbum.updateSelectedTags(null);
-        updatePanel();
+        thumbnailGrid.thumbnailsAdded(firstShown);
+        magnetPanel.photosAdded(first);
+        if (magnetLayout()) {
+            magnetPanel.moveThumbnailsWithMagnets();
+        }
+        setCurrentPhoto(library.size() - 1);
+    }
+
+    /**
+     * Get the on-disk cache consulted before decoding a photo's thumbnail.
+     *
+     * @return thumbnail cache
+     */
+    public ThumbnailCache getThumbnailCache() {
+        return thumbnailCache;
+    }
+
+    /**
+     * Get the store holding the thumbnails in memory.
+     *
+     * @return thumbnail store
+     */
+    public ThumbnailStore getThumbnailStore() {
+        return thumbnailStore;
+    }
+
+    /**
+     * Get the library of photos shown.
+     *
+     * @return photo library
+     */
+    public PhotoLibrary getLibrary() {
+        return library;
+    }
+
+    /**
+     * Get the store holding the full-resolution photos in memory.
+     *
+     * @return photo store
+     */
+    public PhotoStore getPhotoStore() {
+        return photoStore;
     }
 
     /**
-     * Updates the LightTable when an image is added and/or when
-     * the view mode changes
+     * Creates the panels shown by the LightTable. They are created once, and
+     * updatePanel only decides which of them are shown.
+     */
+    private void createPanels() {
+        photoComponent = new PhotoComponent(this);
+        // Lines and gestures are simplified within photoalbum.strokeTolerance
+        // pixels, if it is set to a valid distance
+        String tolerance = System.getProperty("photoalbum.strokeTolerance");
+        if (tolerance != null) {
+            try {
+                double distance = Double.parseDouble(tolerance);
+                if (distance >= 0) photoComponent.setStrokeTolerance(distance);
+            } catch (NumberFormatException ex) {
+                // The default tolerance is kept
+            }
+        }
+        photoPanel = new JPanel();
+        photoPanel.setLayout(new BorderLayout());
+        photoPanel.add(photoComponent.getPhotoComponentScrollPane(), CENTER);
+
+        // Thumbnails are painted by a single renderer shared by both panels
+        ThumbnailComponent renderer = new ThumbnailComponent(border);
+        thumbnailGrid = new ThumbnailGrid(shownPhotos, thumbnailStore, renderer, 4);
+        thumbnailScrollPane = new JScrollPane(thumbnailGrid);
+        thumbnailScrollPane.setHorizontalScrollBarPolicy(
+            JScrollPane.HORIZONTAL_SCROLLBAR_ALWAYS);
+        thumbnailScrollPane.setVerticalScrollBarPolicy(
+            JScrollPane.VERTICAL_SCROLLBAR_ALWAYS);
+        thumbnailScrollPane.getViewport().setBackground(Color.gray);
+        thumbnailGrid.setSelection(selectedPhotos);
+        addLassoListeners();
+
+        magnetPanel = new MagnetPanel(library, magnets, thumbnailStore, renderer);
+
+        addThumbnailListeners(thumbnailGrid);
+        addThumbnailListeners(magnetPanel);
+    }
+
+    /**
+     * Updates the LightTable when the view mode or magnet mode changes. Only
+     * decides which panels are shown; their contents are kept up to date
+     * incrementally.
      */
     private void updatePanel() {
+        boolean wasMagnetLayout = magnetPanel.getParent() == this;
+        this.removeAll();
         if (viewMode == ViewMode.PHOTO) {
-            createPhotoPanel();
+            this.add(photoPanel, CENTER);
+        } else if (viewMode == ViewMode.GRID && magnetMode) {
+            if (!wasMagnetLayout) createMagnetPanel();
+            thumbnailPanel = magnetPanel;
+            this.add(magnetPanel, CENTER);
         } else if (viewMode == ViewMode.GRID) {
-            removePhotoPanel();
-            createThumbnailPanel(ViewMode.GRID);
+            thumbnailGrid.setColumns(4);
+            thumbnailPanel = thumbnailGrid;
+            this.add(thumbnailScrollPane, CENTER);
         } else if (viewMode == ViewMode.SPLIT) {
-            createPhotoPanel();
-            createThumbnailPanel(ViewMode.SPLIT);
+            this.add(photoPanel, CENTER);
+            // A single row of thumbnails under the photo
+            thumbnailGrid.setColumns(0);
+            thumbnailPanel = thumbnailGrid;
+            this.add(thumbnailScrollPane, SOUTH);
         }
+        if (wasMagnetLayout && !magnetLayout()) removeMagnetPanel();
         revalidate();
         repaint();
     }
 
     /**
-     * Creates photo panel, where a single photo is shown when
-     * viewMode == ViewMode.PHOTO
+     * Fills the magnet panel with the magnets and thumbnails, and starts
+     * moving the thumbnails towards their magnets.
      */
-    private void createPhotoPanel() {
-        if (photoPanel != null) this.remove(photoPanel);
-        if (thumbnailScrollPane != null) this.remove(thumbnailScrollPane);
-        if (thumbnailPanel != null) this.remove(thumbnailPanel);
-        photoPanel = new JPanel();
-        photoPanel.setLayout(new BorderLayout());
-        if (currentPhoto != null) {
-            photoPanel.add(currentPhoto.getPhotoComponentScrollPane(), CENTER);
-        } else {
-            photoPanel.add((new PhotoComponent(null, this)).getPhotoComponentScrollPane(), CENTER);
+    private void createMagnetPanel() {
+        for (Magnet m : magnets) {
+            magnetPanel.add(m.getMagnet());
         }
-        this.add(photoPanel, CENTER);
-    }
-
-    /**
-     * Creates thumbnail panel, where a grid of photos is shown when
-     * viewMode == ViewMode.SPLIT or viewMode == ViewMode.GRID
-     */
-    private void createThumbnailPanel(ViewMode viewMode) {
-        if (thumbnailScrollPane != null) this.remove(thumbnailScrollPane);
-        if (thumbnailPanel != null) this.remove(thumbnailPanel);
-        thumbnailPanel = new JPanel();
-        thumbnailPanel.setBackground(Color.gray);
-        if (viewMode == ViewMode.SPLIT || (viewMode == ViewMode.GRID && !magnetMode)) {
-            if (timer != null) timer.stop();
-            thumbnailOffset = 0;
-            JPanel extraPanel = new JPanel();
-            extraPanel.setLayout(new FlowLayout());
-            extraPanel.add(thumbnailPanel);
-            thumbnailScrollPane = new JScrollPane(extraPanel);
-            thumbnailScrollPane.setHorizontalScrollBarPolicy(
-                JScrollPane.HORIZONTAL_SCROLLBAR_ALWAYS);
-            thumbnailScrollPane.setVerticalScrollBarPolicy(
-                JScrollPane.VERTICAL_SCROLLBAR_ALWAYS);
-            extraPanel.setBackground(Color.gray);
-        }
-        if (magnetMode && viewMode == ViewMode.GRID) {
-            thumbnailPanel.setLayout(null);
-            for (Magnet m : magnets) {
-                thumbnailPanel.add(m.getMagnet());
-            }
-            for (ThumbnailComponent thumbnail : thumbnails) {
-                setThumbnailStartCoordinates();
-                moveThumbnailsWithMagnets();
-                thumbnail.setSizeForMagnets();
-                thumbnailPanel.add(thumbnail);
-            }
-            this.add(thumbnailPanel);
-        } else if (viewMode == ViewMode.SPLIT) {
-            thumbnailPanel.setLayout(new GridBagLayout());
-            GridBagConstraints c = new GridBagConstraints();
-            c.insets = new Insets(5,5,5,5);
-            this.add(thumbnailScrollPane, SOUTH);
-            for (ThumbnailComponent thumbnail : thumbnails) {
-                thumbnailPanel.add(thumbnail, c);
-            }
-        } else if (viewMode == ViewMode.GRID) {
-            thumbnailPanel.setLayout(new GridLayout(0, 4, 10, 10));
-            this.add(thumbnailScrollPane, CENTER);
-            for (ThumbnailComponent thumbnail : thumbnails) {
-                thumbnail.setLocation(0, 0);
-                thumbnailPanel.add(thumbnail);
-            }
+        // Thumbnails coming from the grid start from their cell, and those
+        // filtered out of it from the corner
+        Point[] locations = new Point[library.size()];
+        for (int i = 0; i < locations.length; i++) {
+            int cell = shownPhotos.indexOf(library.get(i));
+            locations[i] = cell >= 0
+                ? thumbnailGrid.getCellBounds(cell).getLocation() : new Point();
         }
+        magnetPanel.setLocations(locations);
+        magnetPanel.setSelectedIndex(currentImgIndex);
+        magnetPanel.moveThumbnailsWithMagnets();
+    }
 
-        if (currentImgIndex >= 0) thumbnails.get(currentImgIndex).setBorder(border);
-        addThumbnailListeners();
+    /**
+     * Stops the magnet animation and hands the thumbnails back to the grid.
+     */
+    private void removeMagnetPanel() {
+        magnetPanel.stopAnimation();
+        for (Magnet m : magnets) {
+            magnetPanel.remove(m.getMagnet());
+        }
     }
 
     /**
-     * Removes the photo panel from the LightTable.
+     * Check if the thumbnails are currently laid out around magnets.
+     *
+     * @return true if in grid view and magnet mode
      */
-    private void removePhotoPanel() {
-        if (photoPanel != null) this.remove(photoPanel);
+    private boolean magnetLayout() {
+        return magnetMode && viewMode == ViewMode.GRID;
     }
 
     /**
-     * Adds necessary listeners to the thumbnail panel.
+     * Adds necessary listeners to a thumbnail panel.
      */
-    private void addThumbnailListeners() {
-        thumbnailPanel.addMouseListener(new MouseAdapter() {
+    private void addThumbnailListeners(JComponent panel) {
+        panel.addMouseListener(new MouseAdapter() {
             @Override
             public void mouseClicked(MouseEvent e) {
+                int i = thumbnailAt(e.getPoint());
+                if (i < 0) return;
+                boolean grid = thumbnailPanel == thumbnailGrid;
+                if (grid) i = library.indexOf(shownPhotos.get(i));
                 if (e.getClickCount() == 2) {
-                    int i = 0;
-                    for (ThumbnailComponent thumbnail : thumbnails) {
-                        if (thumbnailWasClicked(thumbnail, e.getPoint())) {
-                            thumbnails.get(currentImgIndex).setBorder(BorderFactory.createEmptyBorder());
-                            currentImgIndex = i;
-                            viewMode = ViewMode.PHOTO;
-                            photoAlbum.updateViewMenu(viewMode);
-                            updateCurrentPhoto();
-                        } else {
-                            i++;
-                        }
-                    }
+                    viewMode = ViewMode.PHOTO;
+                    photoAlbum.updateViewMenu(viewMode);
+                    setCurrentPhoto(i);
+                    updatePanel();
+                } else if (grid && e.isShiftDown()) {
+                    selectRange(i);
+                } else if (grid && (e.isControlDown() || e.isMetaDown())) {
+                    toggleSelected(i);
                 } else {
-                    int i = 0;
-                    for (ThumbnailComponent thumbnail : thumbnails) {
-                        if (thumbnailWasClicked(thumbnail, e.getPoint())) {
-                            thumbnails.get(currentImgIndex).setBorder(BorderFactory.createEmptyBorder());
-                            currentImgIndex = i;
-                            updateCurrentPhoto();
-                            updateStatus("Thumbnail");
-                        } else {
-                            i++;
-                        }
-                    }
+                    setCurrentPhoto(i);
+                    updateStatus("Thumbnail");
                 }
             }
         });
     }
 
     /**
-     * Checks if a specific thumbnail was clicked.
+     * Adds the listeners selecting the thumbnails inside a rectangle dragged
+     * on the grid. Holding shift or control adds them to the selection.
+     */
+    private void addLassoListeners() {
+        MouseAdapter lasso = new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                lassoStart = e.getPoint();
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                if (lassoStart == null) return;
+                thumbnailGrid.setLasso(lassoBounds(e.getPoint()));
+                thumbnailGrid.scrollRectToVisible(new Rectangle(e.getX(), e.getY(), 1, 1));
+            }
+
+            @Override
+            public void mouseReleased(MouseEvent e) {
+                if (lassoStart == null) return;
+                Rectangle bounds = lassoBounds(e.getPoint());
+                lassoStart = null;
+                thumbnailGrid.setLasso(null);
+                // Barely moving is a click
+                if (bounds.width < 4 && bounds.height < 4) return;
+                selectIndices(thumbnailGrid.indicesIn(bounds),
+                    e.isShiftDown() || e.isControlDown() || e.isMetaDown());
+            }
+        };
+        thumbnailGrid.addMouseListener(lasso);
+        thumbnailGrid.addMouseMotionListener(lasso);
+    }
+
+    /**
+     * Get the rectangle dragged from where the lasso started to a point.
+     */
+    private Rectangle lassoBounds(Point end) {
+        Rectangle bounds = new Rectangle(lassoStart);
+        bounds.add(end);
+        return bounds;
+    }
+
+    /**
+     * Finds the thumbnail at the given point of the thumbnail panel.
      *
-     * @return true if the thumbnail was clicked, false otherwise.
+     * @return index of the thumbnail, or -1 if no thumbnail is there
      */
-    private boolean thumbnailWasClicked(ThumbnailComponent thumbnail, Point point) {
-        return thumbnail.getBounds().contains(point);
+    private int thumbnailAt(Point point) {
+        if (thumbnailPanel == thumbnailGrid) return thumbnailGrid.indexAt(point);
+        return magnetPanel.indexAt(point);
     }
 
     /**
@@ -245,6 +335,7 @@ public class LightTable extends JComponent {
      * @param viewMode mode to set the light table to
      */
     public void setViewMode(ViewMode viewMode) {
+        if (this.viewMode == viewMode) return;
         this.viewMode = viewMode;
         updatePanel();
     }
@@ -256,90 +347,309 @@ public class LightTable extends JComponent {
      */
     public void setInkColor(Color color) {
         this.inkColor = color;
-        if (currentPhoto != null) currentPhoto.setInkColor(inkColor);
+        photoComponent.setInkColor(inkColor);
     }
 
     public void setAnnotationMode(AnnotationMode annotationMode) {
         this.annotationMode = annotationMode;
-        if (currentPhoto != null) currentPhoto.setAnnotationMode(annotationMode);
+        photoComponent.setAnnotationMode(annotationMode);
     }
 
     /**
-     * Show previous photo, if one is available.
+     * Show previous photo passing the tag filter, if one is available.
      */
     public void previous() {
-        if (currentImgIndex - 1 >= 0) {
-            thumbnails.get(currentImgIndex).setBorder(BorderFactory.createEmptyBorder());
-            currentImgIndex--;
-            updateCurrentPhoto();
+        if (currentPhoto != null) {
+            int index = shownIndexToLibrary(shownPhotos.positionOf(currentPhoto) - 1);
+            if (index >= 0) setCurrentPhoto(index);
         }
         updateStatus("<");
     }
 
     /**
-     * Show next photo, if one is available.
+     * Show next photo passing the tag filter, if one is available.
      */
     public void next() {
-        if (currentImgIndex + 1 < photoComponents.size()) {
-            thumbnails.get(currentImgIndex).setBorder(BorderFactory.createEmptyBorder());
-            currentImgIndex++;
-            updateCurrentPhoto();
+        int position = 0;
+        if (currentPhoto != null) {
+            position = shownPhotos.positionOf(currentPhoto);
+            if (shownPhotos.contains(currentPhoto)) position++;
         }
+        int index = shownIndexToLibrary(position);
+        if (index >= 0) setCurrentPhoto(index);
         updateStatus(">");
     }
 
     /**
-     * Updates the current photo shown on the LightTable.
+     * Get the library index of a photo shown in the grid.
+     *
+     * @param shownIndex index of the photo in the grid
+     * @return library index, or -1 if there is no such photo
      */
-    private void updateCurrentPhoto() {
-        if (currentImgIndex < 0) {
-            currentPhoto = null;
+    private int shownIndexToLibrary(int shownIndex) {
+        if (shownIndex < 0 || shownIndex >= shownPhotos.size()) return -1;
+        return library.indexOf(shownPhotos.get(shownIndex));
+    }
+
+    /**
+     * Makes the photo at the given index the current photo. Only the
+     * selection border and the photo shown by the PhotoComponent change.
+     *
+     * @param index index of the photo, or -1 if there are no photos
+     */
+    private void setCurrentPhoto(int index) {
+        currentImgIndex = index;
+        currentPhoto = index < 0 ? null : library.get(index);
+        // Any other selected photos are deselected
+        if (selectedPhotos.size() > 1) thumbnailGrid.repaint();
+        selectedPhotos.clear();
+        if (currentPhoto != null) selectedPhotos.add(currentPhoto.getId());
+        selectionAnchor = currentPhoto;
+        int shownIndex = currentPhoto == null ? -1 : shownPhotos.indexOf(currentPhoto);
+        thumbnailGrid.setSelectedIndex(shownIndex);
+        if (magnetLayout()) magnetPanel.setSelectedIndex(index);
+        if (currentPhoto == null) {
+            photoAlbum.updateSelectedTags(null);
         } else {
-            currentPhoto = photoComponents.get(currentImgIndex);
-            currentPhoto.setInkColor(inkColor);
-            currentPhoto.setAnnotationMode(annotationMode);
             photoAlbum.updateSelectedTags(currentPhoto.getTags());
+            if (thumbnailPanel == thumbnailGrid && shownIndex >= 0) {
+                thumbnailGrid.scrollRectToVisible(thumbnailGrid.getCellBounds(shownIndex));
+            }
+        }
+        photoComponent.setPhoto(currentPhoto);
+        // Photos are flipped through in the order of the grid
+        if (shownIndex >= 0 || currentPhoto == null) {
+            prefetcher.currentPhotoChanged(shownPhotos, shownIndex);
+        } else {
+            prefetcher.currentPhotoChanged(library.getPhotos(), currentImgIndex);
         }
-        updatePanel();
     }
 
     /**
-     * Deletes the current photo shown on the LightTable and updates it.
+     * Selects the photos shown in the grid from the anchor of the selection
+     * to the given one, which becomes the current photo.
+     *
+     * @param index library index of the photo
      */
-    public void deleteCurrentPhoto() {
-        if (currentImgIndex >= 0) {
-            photoComponents.remove(currentImgIndex);
-            thumbnails.remove(currentImgIndex);
+    private void selectRange(int index) {
+        Photo anchor = selectionAnchor;
+        setCurrentPhoto(index);
+        if (anchor == null || library.indexOf(anchor) < 0) return;
+        // Ids are in library order, so the range is the shown ids between both
+        int from = Math.min(anchor.getId(), currentPhoto.getId());
+        int to = Math.max(anchor.getId(), currentPhoto.getId());
+        BitSet range = shownPhotos.getIds();
+        range.clear(0, from);
+        range.clear(to + 1, Math.max(to + 1, range.length()));
+        selectedPhotos.addAll(range);
+        selectionAnchor = anchor;
+        selectionChanged();
+    }
+
+    /**
+     * Adds a photo to the selection, or removes it if it was selected. The
+     * photo becomes the current photo either way.
+     *
+     * @param index library index of the photo
+     */
+    private void toggleSelected(int index) {
+        BitSet previous = selectedPhotos.toBitSet();
+        setCurrentPhoto(index);
+        selectedPhotos.addAll(previous);
+        if (previous.get(currentPhoto.getId())) selectedPhotos.remove(currentPhoto.getId());
+        selectionChanged();
+    }
+
+    /**
+     * Selects the photos at some indices of the grid.
+     *
+     * @param indices indices of the photos in the grid
+     * @param add true to add them to the selection, false to replace it
+     */
+    private void selectIndices(int[] indices, boolean add) {
+        if (indices.length == 0) return;
+        BitSet selected = add ? selectedPhotos.toBitSet() : new BitSet();
+        for (int index : indices) {
+            selected.set(shownPhotos.get(index).getId());
         }
-        if (photoComponents.size() == 0) {
-            currentImgIndex = -1;
-            currentPhoto = null;
-        } else if (currentImgIndex >= 1) {
-            currentImgIndex--;
+        if (!add || currentPhoto == null) {
+            setCurrentPhoto(library.indexOf(shownPhotos.get(indices[0])));
         }
-        updateCurrentPhoto();
+        selectedPhotos.addAll(selected);
+        selectionChanged();
+    }
+
+    /**
+     * Repaints the grid and reports the size of the selection once it
+     * changed.
+     */
+    private void selectionChanged() {
+        thumbnailGrid.repaint();
+        if (selectedPhotos.size() > 1) updateStatus(selectedPhotos.size() + " photos selected");
+    }
+
+    /**
+     * Deletes the current photo shown on the LightTable and updates it.
+     */
+    public void deleteCurrentPhoto() {
+        if (currentImgIndex < 0) return;
+        Photo deleted = library.remove(currentImgIndex);
+        photoStore.remove(deleted.getFile());
+        thumbnailStore.remove(deleted);
+        magnetPanel.photoRemoved(currentImgIndex, deleted);
+        int shownIndex = shownPhotos.indexOf(deleted);
+        if (shownPhotos.photoRemoved(deleted)) thumbnailGrid.thumbnailRemoved(shownIndex, deleted);
+        int removedIndex = currentImgIndex;
+        currentImgIndex = -1; // The old current thumbnail is gone
+        // The previous photo passing the filter becomes current, or else the
+        // next one
+        int position = shownPhotos.positionOf(deleted);
+        int index = shownIndexToLibrary(position >= 1 ? position - 1 : position);
+        if (index < 0 && library.size() > 0) index = Math.max(0, removedIndex - 1);
+        setCurrentPhoto(index);
     }
 
     /**
-     * Add selected tag to current photo.
+     * Add selected tag to the selected photos.
      *
      * @param tag
      */
     public void addTag(Tag tag) {
-        if (currentPhoto != null) {
-            currentPhoto.addTag(tag);
+        if (selectedPhotos.size() > 1) {
+            tagSelectedPhotos(tag, true);
+        } else if (currentPhoto != null) {
+            addTag(currentPhoto, tag);
         }
     }
 
     /**
-     * Remove deselected tag from current photo.
+     * Remove deselected tag from the selected photos.
      *
      * @param tag
      */
     public void removeTag(Tag tag) {
-        if (currentPhoto != null) {
-            currentPhoto.removeTag(tag);
+        if (selectedPhotos.size() > 1) {
+            tagSelectedPhotos(tag, false);
+        } else if (currentPhoto != null) {
+            removeTag(currentPhoto, tag);
+        }
+    }
+
+    /**
+     * Add a tag to a single photo.
+     *
+     * @param photo
+     * @param tag
+     */
+    public void addTag(Photo photo, Tag tag) {
+        library.addTag(photo, tag);
+        tagsChanged(photo);
+    }
+
+    /**
+     * Remove a tag from a single photo.
+     *
+     * @param photo
+     * @param tag
+     */
+    public void removeTag(Photo photo, Tag tag) {
+        library.removeTag(photo, tag);
+        tagsChanged(photo);
+    }
+
+    /**
+     * Adds or removes a tag from all selected photos as a single update of
+     * the library and the grid, which is laid out and repainted once.
+     * Selected photos the tag filter hides are deselected.
+     *
+     * @param tag
+     * @param add true to add the tag, false to remove it
+     */
+    private void tagSelectedPhotos(Tag tag, boolean add) {
+        BitSet ids = selectedPhotos.toBitSet();
+        BitSet changed = add ? library.addTag(ids, tag) : library.removeTag(ids, tag);
+        if (changed.isEmpty()) return;
+        BitSet shownBefore = shownPhotos.getIds();
+        if (shownPhotos.photosChanged(changed)) {
+            selectedPhotos.retainAll(shownPhotos.getIds());
+            shownPhotosChanged(shownBefore);
+            int shownIndex = currentPhoto == null ? -1 : shownPhotos.indexOf(currentPhoto);
+            thumbnailGrid.setSelectedIndex(shownIndex);
+        }
+        updateStatus(tag.getTagName() + (add ? " added to " : " removed from ")
+            + changed.cardinality() + " photos");
+    }
+
+    /**
+     * Shows or hides a photo in the grid after its tags changed. Only that
+     * photo is checked against the tag filter.
+     *
+     * @param photo
+     */
+    private void tagsChanged(Photo photo) {
+        int shownIndex = shownPhotos.indexOf(photo);
+        if (!shownPhotos.photoChanged(photo)) return;
+        if (shownIndex >= 0) thumbnailGrid.thumbnailRemoved(shownIndex, photo);
+        else thumbnailGrid.thumbnailInserted(shownPhotos.indexOf(photo));
+        if (currentPhoto != null) thumbnailGrid.setSelectedIndex(shownPhotos.indexOf(currentPhoto));
+    }
+
+    /**
+     * Tells the grid which photos were shown or hidden by a change of the
+     * shown photos, so only those thumbnails are measured.
+     *
+     * @param shownBefore identifiers of the photos shown before the change
+     */
+    private void shownPhotosChanged(BitSet shownBefore) {
+        BitSet shownAfter = shownPhotos.getIds();
+        List<Photo> shown = new ArrayList<Photo>();
+        List<Photo> hidden = new ArrayList<Photo>();
+        BitSet changed = (BitSet)shownBefore.clone();
+        changed.xor(shownAfter);
+        for (int id = changed.nextSetBit(0); id >= 0; id = changed.nextSetBit(id + 1)) {
+            if (shownAfter.get(id)) shown.add(library.getById(id));
+            else hidden.add(library.getById(id));
         }
+        thumbnailGrid.thumbnailsChanged(shown, hidden);
+    }
+
+    /**
+     * Sets the tag filter deciding which photos the grid and split views
+     * show. The photo view can still show any photo, but previous and next
+     * only go through the photos passing the filter.
+     *
+     * @param query
+     */
+    public void setTagQuery(TagQuery query) {
+        BitSet shownBefore = shownPhotos.getIds();
+        shownPhotos.setQuery(query);
+        // Hidden photos can't stay selected, or tags would change unseen
+        selectedPhotos.retainAll(shownPhotos.getIds());
+        shownPhotosChanged(shownBefore);
+        int shownIndex = currentPhoto == null ? -1 : shownPhotos.indexOf(currentPhoto);
+        thumbnailGrid.setSelectedIndex(shownIndex);
+        if (thumbnailPanel == thumbnailGrid && shownIndex >= 0) {
+            thumbnailGrid.scrollRectToVisible(thumbnailGrid.getCellBounds(shownIndex));
+        }
+        updateStatus(query + ": " + shownPhotos.size() + " of " + library.size() + " photos");
+    }
+
+    /**
+     * Get the tag filter deciding which photos the grid and split views show.
+     *
+     * @return query
+     */
+    public TagQuery getTagQuery() {
+        return shownPhotos.getQuery();
+    }
+
+    /**
+     * Get the reason the gesture settings the user chose couldn't be used.
+     *
+     * @return warning, or null if they are used
+     */
+    public String getGestureWarning() {
+        return photoComponent.getGestureWarning();
     }
 
     /**
@@ -362,11 +672,11 @@ public class LightTable extends JComponent {
      * @param zoomFactor
      */
     public void updateScaleFactor(double zoomFactor) {
+        if (zoomFactor == currZoom) return;
         currZoom = zoomFactor;
-        for (ThumbnailComponent thumbnail : thumbnails) {
-            thumbnail.updateScaleFactor(zoomFactor);
-        }
-        updatePanel();
+        // Thumbnails only change size, so a relayout is enough
+        thumbnailGrid.setZoomFactor(zoomFactor);
+        magnetPanel.setZoomFactor(zoomFactor);
     }
 
     /**
@@ -375,9 +685,17 @@ public class LightTable extends JComponent {
      * @param tag
      */
     public void updateMagnets(Tag tag) {
-        if (magnetExists(tag)) removeMagnet(tag);
-        else magnets.add(0, new Magnet(tag, this));
-        updatePanel();
+        if (magnetExists(tag)) {
+            removeMagnet(tag);
+            moveThumbnailsWithMagnets();
+        } else {
+            Magnet magnet = new Magnet(tag, this);
+            magnets.add(0, magnet);
+            if (magnetLayout()) magnetPanel.add(magnet.getMagnet(), 0);
+            // Thumbnails only head for the magnets known when they start moving
+            moveThumbnailsWithMagnets();
+        }
+        magnetPanel.repaint();
     }
 
     /**
@@ -386,8 +704,9 @@ public class LightTable extends JComponent {
      * @param magnetMode
      */
     public void setMagnetMode(boolean magnetMode) {
+        if (this.magnetMode == magnetMode) return;
         this.magnetMode = magnetMode;
-        updatePanel();
+        if (viewMode == ViewMode.GRID) updatePanel();
     }
 
     /**
@@ -397,6 +716,7 @@ public class LightTable extends JComponent {
      */
     public void addMagnet(Tag tag) {
         magnets.add(new Magnet(tag, this));
+        moveThumbnailsWithMagnets();
     }
 
     /**
@@ -408,8 +728,9 @@ public class LightTable extends JComponent {
         Magnet curr;
         for (int i = 0; i < magnets.size(); i++) {
             curr = magnets.get(i);
-            if (curr.getTag().equals(tag.getTagName())) {
+            if (curr.getTag() == tag) {
                 magnets.remove(i);
+                magnetPanel.remove(curr.getMagnet());
                 break;
             }
         }
@@ -422,80 +743,16 @@ public class LightTable extends JComponent {
      */
     private boolean magnetExists(Tag tag) {
         for (Magnet m: magnets) {
-            if (m.getTag().equals(tag.getTagName())) return true;
+            if (m.getTag() == tag) return true;
         }
         return false;
     }
 
-    /**
-     * Calculates each thumbnail's position in relation to its tags and magnets
-     * currently present in the application.
-     */
-    public void positionsInRelationToMagnets() {
-        Set<String> tags;
-        int magnetsX = 0;
-        int magnetsY = 0;;
-        int thumbnailX;
-        int thumbnailY;
-        int numOfMagnets = 0;
-        for (ThumbnailComponent thumbnail : thumbnails) {
-            tags = thumbnail.getTags();
-            if (tags.size() > 0) { // No need to calculate location if photo isn't tagged
-                for (Magnet magnet : magnets) {
-                    if (tags.contains(magnet.getTag())) {
-                        numOfMagnets++;
-                        magnetsX += magnet.getX();
-                        magnetsY += magnet.getY();
-                    }
-                }
-                if (numOfMagnets > 0) {
-                    thumbnailX = magnetsX / numOfMagnets;
-                    thumbnailY = magnetsY / numOfMagnets;
-                    thumbnail.setMagnetModeCoordinates(thumbnailX, thumbnailY);
-                }
-            }
-            magnetsX = 0;
-            magnetsY = 0;
-            numOfMagnets = 0;
-        }
-    }
-
     /**
      * Moves each thumbnail in relation to its tags and magnets currently
      * present in the application.
      */
     public void moveThumbnailsWithMagnets() {
-        if (timer != null ) {
-            timer.stop();
-            numOfIterations = 0;
-        }
-        timer = new Timer(ANIMATION_TIME, new ActionListener() {
-            @Override
-            public void actionPerformed(ActionEvent e) {
-                if (numOfIterations++ >= 7) {
-                    timer.stop();
-                    numOfIterations = 0;
-                } else {
-                    positionsInRelationToMagnets();
-                    for (ThumbnailComponent thumbnail : thumbnails) {
-                        thumbnail.setLocation(
-                        thumbnail.getX() +
-                        ((thumbnail.getMagnetModeX() - thumbnail.getStartX()) / 7),
-                        thumbnail.getY() +
-                        ((thumbnail.getMagnetModeY() - thumbnail.getStartY()) / 7));
-                    }
-                }
-            }
-        });
-        timer.start();
-    }
-
-    /**
-     * Saves each thumbnail's starting position to be used for animation.
-     */
-    public void setThumbnailStartCoordinates() {
-        for (ThumbnailComponent thumbnail : thumbnails) {
-            thumbnail.setStartCoordinates();
-        }
+        if (magnetLayout()) magnetPanel.moveThumbnailsWithMagnets();
     }
 }
@@ -38,8 +38,6 @@ public class Magnet implements MouseListener, MouseMotionListener {
         label.setLocation(this.x, this.y);
         label.addMouseListener(this);
         label.addMouseMotionListener(this);
-        lightTable.moveThumbnailsWithMagnets();
-        lightTable.setThumbnailStartCoordinates();
     }
 
     /**
@@ -102,12 +100,12 @@ public class Magnet implements MouseListener, MouseMotionListener {
     }
 
     /**
-     * Returns the tag name of this Magnet.
+     * Returns the tag of this Magnet.
      *
-     * @return tag name
+     * @return tag
      */
-    public String getTag() {
-        return tag.getTagName();
+    public Tag getTag() {
+        return tag;
     }
 
     /**
@@ -126,13 +124,11 @@ public class Magnet implements MouseListener, MouseMotionListener {
     public void mousePressed(MouseEvent e) {
         this.clickX = e.getX();
         this.clickY = e.getY();
-        lightTable.setThumbnailStartCoordinates();
     }
 
     @Override
     public void mouseReleased(MouseEvent e) {
         lightTable.moveThumbnailsWithMagnets();
-        lightTable.setThumbnailStartCoordinates();
     }
 
     @Override
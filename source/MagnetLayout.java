@@ -0,0 +1,150 @@
+/**
+ * MagnetLayout
+ * Where each thumbnail heads in magnet mode, indexed like the photos: the
+ * average position of the magnets of its tags. Layouts never change once
+ * made, so one can be computed on a worker thread from a snapshot of the
+ * tags and magnets, and handed to the Event Dispatch Thread, which swaps it
+ * in whole.
+ * CS 4470 - User Interface Software
+ * apl7@gatech.edu
+ *
+ * @author Alejandrina Patron Lopez
+ * @version 1.0
+ */
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+public class MagnetLayout {
+
+    private final int[] x;
+    private final int[] y;
+
+    private MagnetLayout(int[] x, int[] y) {
+        this.x = x;
+        this.y = y;
+    }
+
+    /**
+     * Creates a layout sending every thumbnail to the same position.
+     *
+     * @param n number of thumbnails
+     * @param x
+     * @param y
+     */
+    public MagnetLayout(int n, int x, int y) {
+        this.x = new int[n];
+        this.y = new int[n];
+        Arrays.fill(this.x, x);
+        Arrays.fill(this.y, y);
+    }
+
+    /**
+     * Computes where each thumbnail heads. Thumbnails of photos without any
+     * magnet keep their previous position. Only the arguments are read, so
+     * this can run on any thread as long as nothing else changes them.
+     *
+     * @param ids identifiers of the photos, whose order is the photos' order
+     * @param tagged for each magnet, identifiers of the photos with its tag
+     * @param magnetX x position of each magnet
+     * @param magnetY y position of each magnet
+     * @param previous positions of the thumbnails until now, indexed like the photos
+     * @return layout
+     */
+    public static MagnetLayout compute(BitSet ids, BitSet[] tagged, int[] magnetX,
+            int[] magnetY, MagnetLayout previous) {
+        int n = ids.cardinality();
+        int[] indexOf = new int[ids.length()];
+        for (int id = ids.nextSetBit(0), i = 0; id >= 0; id = ids.nextSetBit(id + 1), i++) {
+            indexOf[id] = i;
+        }
+        // Goes through the photos of each magnet rather than the magnets of
+        // each photo, so photos without magnets cost nothing
+        long[] sumX = new long[n];
+        long[] sumY = new long[n];
+        int[] count = new int[n];
+        for (int m = 0; m < tagged.length; m++) {
+            for (int id = tagged[m].nextSetBit(0); id >= 0 && id < indexOf.length;
+                    id = tagged[m].nextSetBit(id + 1)) {
+                if (!ids.get(id)) continue;
+                int i = indexOf[id];
+                sumX[i] += magnetX[m];
+                sumY[i] += magnetY[m];
+                count[i]++;
+            }
+        }
+        int[] x = Arrays.copyOf(previous.x, n);
+        int[] y = Arrays.copyOf(previous.y, n);
+        for (int i = 0; i < n; i++) {
+            if (count[i] > 0) {
+                x[i] = (int)(sumX[i] / count[i]);
+                y[i] = (int)(sumY[i] / count[i]);
+            }
+        }
+        return new MagnetLayout(x, y);
+    }
+
+    /**
+     * Get the number of thumbnails laid out.
+     *
+     * @return size
+     */
+    public int size() {
+        return x.length;
+    }
+
+    /**
+     * Get the x position the thumbnail at the given index heads to.
+     *
+     * @param index
+     * @return x
+     */
+    public int getX(int index) {
+        return x[index];
+    }
+
+    /**
+     * Get the y position the thumbnail at the given index heads to.
+     *
+     * @param index
+     * @return y
+     */
+    public int getY(int index) {
+        return y[index];
+    }
+
+    /**
+     * Get a copy of the layout with thumbnails appended.
+     *
+     * @param n number of thumbnails in the copy
+     * @param x position of the new thumbnails
+     * @param y
+     * @return layout
+     */
+    public MagnetLayout append(int n, int x, int y) {
+        int[] newX = Arrays.copyOf(this.x, n);
+        int[] newY = Arrays.copyOf(this.y, n);
+        for (int i = this.x.length; i < n; i++) {
+            newX[i] = x;
+            newY[i] = y;
+        }
+        return new MagnetLayout(newX, newY);
+    }
+
+    /**
+     * Get a copy of the layout without the thumbnail at the given index.
+     *
+     * @param index
+     * @return layout
+     */
+    public MagnetLayout remove(int index) {
+        return new MagnetLayout(remove(x, index), remove(y, index));
+    }
+
+    private static int[] remove(int[] array, int index) {
+        int[] result = new int[array.length - 1];
+        System.arraycopy(array, 0, result, 0, index);
+        System.arraycopy(array, index + 1, result, index, array.length - index - 1);
+        return result;
+    }
+}
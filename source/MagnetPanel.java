@@ -0,0 +1,326 @@
+/**
+ * MagnetPanel
+ * Shows thumbnails laid out around the magnets in magnet mode. Magnets are
+ * added as children, while thumbnails are only painted: their positions are
+ * kept in arrays indexed like the photos, so moving them doesn't involve any
+ * Swing components. When the magnets change, where each thumbnail goes is
+ * computed once, on a worker thread, into a MagnetLayout that is swapped in
+ * when ready, and the thumbnails are then eased there by an Animation,
+ * repainting once per frame.
+ * CS 4470 - User Interface Software
+ * apl7@gatech.edu
+ *
+ * @author Alejandrina Patron Lopez
+ * @version 1.0
+ */
+
+import javax.swing.*;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.event.MouseEvent;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+public class MagnetPanel extends JComponent {
+
+    private final int ANIMATION_TIME = 800;
+
+    private PhotoLibrary library;
+    private List<Photo> photos;
+    private List<Magnet> magnets;
+    private ThumbnailStore thumbnailStore;
+    private ThumbnailComponent renderer;
+    private CellRendererPane rendererPane = new CellRendererPane();
+    private double zoomFactor = 1.0;
+    private int selectedIndex = -1;
+    // Thumbnail positions, indexed like photos
+    private int[] x = new int[0];
+    private int[] y = new int[0];
+    private int[] startX = new int[0]; // Where the thumbnails were when they started moving
+    private int[] startY = new int[0];
+    private MagnetLayout targets = new MagnetLayout(0, 0, 0); // Where they are moving to
+    private ExecutorService layoutThread;
+    // Only the latest layout requested is used. Written on the Event
+    // Dispatch Thread, and read on the layout thread to skip obsolete layouts
+    private volatile int layoutRequest = 0;
+    private int photosChanged = 0; // Layouts computed for other photos can't be used
+    private ThumbnailQuadtree quadtree; // Built when needed, null when out of date
+    private Animation animation = new Animation(ANIMATION_TIME, new Animation.Frame() {
+        @Override
+        public void show(double progress) {
+            for (int i = 0; i < x.length; i++) {
+                x[i] = startX[i] + (int)Math.round((targets.getX(i) - startX[i]) * progress);
+                y[i] = startY[i] + (int)Math.round((targets.getY(i) - startY[i]) * progress);
+            }
+            quadtree = null;
+            repaint();
+        }
+    });
+    private Runnable repainter = new Runnable() {
+        @Override
+        public void run() {
+            repaint();
+        }
+    };
+
+    /**
+     * Creates a new MagnetPanel.
+     *
+     * @param library library whose thumbnails are shown, in order
+     * @param magnets magnets the thumbnails are attracted to
+     * @param thumbnailStore store the thumbnails are read from
+     * @param renderer component used to paint each thumbnail
+     */
+    public MagnetPanel(PhotoLibrary library, List<Magnet> magnets,
+            ThumbnailStore thumbnailStore, ThumbnailComponent renderer) {
+        this.library = library;
+        this.photos = library.getPhotos();
+        this.magnets = magnets;
+        this.thumbnailStore = thumbnailStore;
+        this.renderer = renderer;
+        this.setBackground(Color.gray);
+        this.setOpaque(true);
+        this.setLayout(null);
+        this.add(rendererPane);
+        ToolTipManager.sharedInstance().registerComponent(this);
+        layoutThread = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "MagnetPanel layout");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Places every thumbnail at the given location before the thumbnails
+     * start moving towards their magnets.
+     *
+     * @param locations location of each thumbnail, indexed like the photos
+     */
+    public void setLocations(Point[] locations) {
+        int n = photos.size();
+        x = new int[n];
+        y = new int[n];
+        startX = new int[n];
+        startY = new int[n];
+        targets = new MagnetLayout(n, 50, 50);
+        photosChanged++;
+        for (int i = 0; i < n; i++) {
+            x[i] = locations[i].x;
+            y[i] = locations[i].y;
+        }
+        quadtree = null;
+        repaint();
+    }
+
+    /**
+     * Makes room for thumbnails appended to the photos. New thumbnails start
+     * in the top left corner.
+     *
+     * @param first index of the first new photo
+     */
+    public void photosAdded(int first) {
+        int n = photos.size();
+        x = Arrays.copyOf(x, n);
+        y = Arrays.copyOf(y, n);
+        startX = Arrays.copyOf(startX, n);
+        startY = Arrays.copyOf(startY, n);
+        targets = targets.append(n, 50, 50);
+        photosChanged++;
+        quadtree = null;
+    }
+
+    /**
+     * Forgets the position of a removed photo's thumbnail.
+     *
+     * @param index index the photo had
+     * @param removed photo that is no longer in the list
+     */
+    public void photoRemoved(int index, Photo removed) {
+        if (index >= x.length) return;
+        Dimension size = ThumbnailComponent.getImageSize(removed, zoomFactor);
+        repaint(x[index], y[index], size.width, size.height);
+        x = remove(x, index);
+        y = remove(y, index);
+        startX = remove(startX, index);
+        startY = remove(startY, index);
+        targets = targets.remove(index);
+        photosChanged++;
+        if (selectedIndex == index) selectedIndex = -1;
+        else if (selectedIndex > index) selectedIndex--;
+        quadtree = null;
+    }
+
+    /**
+     * Removes an element from an array.
+     */
+    private static int[] remove(int[] array, int index) {
+        int[] result = new int[array.length - 1];
+        System.arraycopy(array, 0, result, 0, index);
+        System.arraycopy(array, index + 1, result, index, array.length - index - 1);
+        return result;
+    }
+
+    /**
+     * Sets the zoom factor the thumbnails are drawn at.
+     *
+     * @param zoomFactor
+     */
+    public void setZoomFactor(double zoomFactor) {
+        this.zoomFactor = zoomFactor;
+        quadtree = null;
+        repaint();
+    }
+
+    /**
+     * Sets the thumbnail drawn with the selection border.
+     *
+     * @param index index of the selected photo, or -1
+     */
+    public void setSelectedIndex(int index) {
+        if (selectedIndex >= 0 && selectedIndex < x.length) repaint(getThumbnailBounds(selectedIndex));
+        selectedIndex = index;
+        if (selectedIndex >= 0 && selectedIndex < x.length) repaint(getThumbnailBounds(selectedIndex));
+    }
+
+    /**
+     * Get the bounds of the thumbnail at the given index.
+     *
+     * @param index
+     * @return thumbnail bounds
+     */
+    public Rectangle getThumbnailBounds(int index) {
+        Dimension size = ThumbnailComponent.getImageSize(photos.get(index), zoomFactor);
+        return new Rectangle(x[index], y[index], size.width, size.height);
+    }
+
+    /**
+     * Finds the topmost thumbnail at the given point.
+     *
+     * @param p
+     * @return index of the thumbnail, or -1 if p isn't on a thumbnail
+     */
+    public int indexAt(Point p) {
+        return getQuadtree().indexAt(p.x, p.y);
+    }
+
+    @Override
+    public String getToolTipText(MouseEvent e) {
+        int i = indexAt(e.getPoint());
+        return i >= 0 ? photos.get(i).getFile().getName() : null;
+    }
+
+    /**
+     * Get the quadtree over the thumbnails' current bounds, building it if
+     * they moved.
+     *
+     * @return quadtree
+     */
+    private ThumbnailQuadtree getQuadtree() {
+        if (quadtree == null) {
+            Rectangle[] bounds = new Rectangle[x.length];
+            for (int i = 0; i < bounds.length; i++) {
+                bounds[i] = getThumbnailBounds(i);
+            }
+            quadtree = new ThumbnailQuadtree(bounds);
+        }
+        return quadtree;
+    }
+
+    @Override
+    public void paintComponent(Graphics g) {
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) clip = new Rectangle(0, 0, getWidth(), getHeight());
+        g.setColor(getBackground());
+        g.fillRect(clip.x, clip.y, clip.width, clip.height);
+        thumbnailStore.startPaint();
+        // While thumbnails move, the quadtree would be out of date on every
+        // frame, so all of them are checked against the clip instead
+        int[] visible = null;
+        if (!animation.isRunning()) visible = getQuadtree().query(clip);
+        int count = visible != null ? visible.length : x.length;
+        // Earlier thumbnails are painted last, so they end up on top
+        for (int j = count - 1; j >= 0; j--) {
+            int i = visible != null ? visible[j] : j;
+            Rectangle bounds = getThumbnailBounds(i);
+            if (!bounds.intersects(clip)) continue;
+            Photo photo = photos.get(i);
+            renderer.setPhoto(photo, thumbnailStore.get(photo, bounds.width, bounds.height,
+                getGraphicsConfiguration(), repainter), zoomFactor, i == selectedIndex);
+            rendererPane.paintComponent(g, renderer, this,
+                bounds.x, bounds.y, bounds.width, bounds.height, true);
+        }
+    }
+
+    /**
+     * Moves each thumbnail in relation to its tags and magnets currently
+     * present in the application. The positions are computed on the layout
+     * thread from a snapshot of the tags and magnets, and the thumbnails
+     * start moving once they are ready. Thumbnails already moving head for
+     * their new positions from where they are.
+     */
+    public void moveThumbnailsWithMagnets() {
+        final int request = ++layoutRequest;
+        final int photosChanged = this.photosChanged;
+        // Copying the bitmaps takes a word per 64 photos, leaving the work
+        // per photo to the layout thread
+        final BitSet ids = library.getIds();
+        final BitSet[] tagged = new BitSet[magnets.size()];
+        final int[] magnetX = new int[magnets.size()];
+        final int[] magnetY = new int[magnets.size()];
+        for (int m = 0; m < tagged.length; m++) {
+            tagged[m] = library.getTaggedIds(magnets.get(m).getTag());
+            magnetX[m] = magnets.get(m).getX();
+            magnetY[m] = magnets.get(m).getY();
+        }
+        final MagnetLayout previous = targets;
+        layoutThread.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (request != layoutRequest) return; // Requested again while queued
+                final MagnetLayout layout =
+                    MagnetLayout.compute(ids, tagged, magnetX, magnetY, previous);
+                SwingUtilities.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        layoutComputed(layout, request, photosChanged);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Swaps in a layout computed on the layout thread, and starts moving
+     * the thumbnails there.
+     */
+    private void layoutComputed(MagnetLayout layout, int request, int photosChanged) {
+        if (request != layoutRequest) return; // A newer layout is on its way
+        if (photosChanged != this.photosChanged || layout.size() != x.length) {
+            // Photos were added or removed meanwhile, so it is laid out again
+            moveThumbnailsWithMagnets();
+            return;
+        }
+        targets = layout;
+        System.arraycopy(x, 0, startX, 0, x.length);
+        System.arraycopy(y, 0, startY, 0, y.length);
+        animation.start();
+    }
+
+    /**
+     * Stops moving the thumbnails.
+     */
+    public void stopAnimation() {
+        layoutRequest++; // Layouts on their way are ignored
+        animation.stop();
+    }
+}
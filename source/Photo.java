@@ -0,0 +1,197 @@
+/**
+ * Photo
+ * Everything the album knows about a single photo. Photos are plain data;
+ * the decoded pixels live in the PhotoStore and ThumbnailStore, and a single
+ * PhotoComponent shows whichever photo is current.
+ * CS 4470 - User Interface Software
+ * apl7@gatech.edu
+ *
+ * @author Alejandrina Patron Lopez
+ * @version 1.0
+ */
+
+import java.io.File;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Set;
+import java.util.LinkedHashSet;
+
+public class Photo {
+
+    private int id;
+    private File file;
+    private int width;
+    private int height;
+    private BitSet tags = new BitSet(); // One bit per tag, by the tag's ordinal
+    private List<Annotation> annotations; // Created when the first annotation is added
+    private AnnotationIndex annotationIndex;
+    private boolean flipped = false;
+
+    /**
+     * Creates a new Photo.
+     *
+     * @param id identifier, unique within the PhotoLibrary
+     * @param file file the photo is read from
+     * @param width full-resolution width of the photo
+     * @param height full-resolution height of the photo
+     */
+    public Photo(int id, File file, int width, int height) {
+        this.id = id;
+        this.file = file;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Get the photo's identifier.
+     *
+     * @return id
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Get the file the photo is read from.
+     *
+     * @return file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Get the full-resolution width of the photo.
+     *
+     * @return width
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Get the full-resolution height of the photo.
+     *
+     * @return height
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Adds a single tag to the Photo. Tags should be changed through the
+     * PhotoLibrary, which keeps track of the photos with each tag.
+     *
+     * @param tagId id of the tag in the TagRegistry
+     * @return true if the photo didn't have the tag yet
+     */
+    boolean addTag(int tagId) {
+        if (tags.get(tagId)) return false;
+        tags.set(tagId);
+        return true;
+    }
+
+    /**
+     * Removes a single tag from the Photo. Tags should be changed through the
+     * PhotoLibrary, which keeps track of the photos with each tag.
+     *
+     * @param tagId id of the tag in the TagRegistry
+     * @return true if the photo had the tag
+     */
+    boolean removeTag(int tagId) {
+        if (!tags.get(tagId)) return false;
+        tags.clear(tagId);
+        return true;
+    }
+
+    /**
+     * Check if the Photo has the given tag.
+     *
+     * @param tag
+     * @return true if the photo is tagged with tag
+     */
+    public boolean hasTag(Tag tag) {
+        return hasTag(TagRegistry.getId(tag));
+    }
+
+    /**
+     * Check if the Photo has the given tag.
+     *
+     * @param tagId id of the tag in the TagRegistry
+     * @return true if the photo is tagged with the tag
+     */
+    public boolean hasTag(int tagId) {
+        return tags.get(tagId);
+    }
+
+    /**
+     * Check if the Photo has any tag.
+     *
+     * @return true if the photo is tagged
+     */
+    public boolean isTagged() {
+        return !tags.isEmpty();
+    }
+
+    /**
+     * Get the Photo's tags as a bit set, with the bit of each tag's id in
+     * the TagRegistry set. The bit set must not be modified.
+     *
+     * @return tags
+     */
+    public BitSet getTagBits() {
+        return tags;
+    }
+
+    /**
+     * Returns a set containing the names of the Photo's tags.
+     */
+    public Set<String> getTags() {
+        Set<String> names = new LinkedHashSet<String>();
+        for (int id = tags.nextSetBit(0); id >= 0; id = tags.nextSetBit(id + 1)) {
+            names.add(TagRegistry.getName(id));
+        }
+        return Collections.unmodifiableSet(names);
+    }
+
+    /**
+     * Get the annotations drawn on the back of the photo, i.e., lines and
+     * post-its.
+     *
+     * @return annotations
+     */
+    public List<Annotation> getAnnotations() {
+        if (annotations == null) annotations = new ArrayList<Annotation>();
+        return annotations;
+    }
+
+    /**
+     * Get the index used to find the annotations at a given point.
+     *
+     * @return annotation index
+     */
+    public AnnotationIndex getAnnotationIndex() {
+        if (annotationIndex == null) annotationIndex = new AnnotationIndex();
+        return annotationIndex;
+    }
+
+    /**
+     * Check if the photo is flipped, showing its annotations.
+     *
+     * @return true if the photo is flipped
+     */
+    public boolean isFlipped() {
+        return flipped;
+    }
+
+    /**
+     * Sets the photo's flipped state.
+     *
+     * @param flipped
+     */
+    public void setFlipped(boolean flipped) {
+        this.flipped = flipped;
+    }
+}
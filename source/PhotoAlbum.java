@@ -12,13 +12,12 @@ import java.awt.event.*;
 import javax.swing.*;
 import javax.swing.filechooser.FileNameExtensionFilter;
 import java.io.File;
-import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
-import java.io.IOException;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.Set;
 
 public class PhotoAlbum {
@@ -38,10 +37,17 @@ public class PhotoAlbum {
     private List<JRadioButtonMenuItem> rbMenuItems;
     private List<JRadioButtonMenuItem> magnetMenuItems;
     private List<JCheckBox> tagCheckboxes;
+    private boolean updatingTags = false; // Checkboxes follow the current photo
     private final int MIN_ZOOM_FACTOR = 5;
     private final int MAX_ZOOM_FACTOR = 15;
     private final int START_ZOOM_FACTOR = 10;
     private boolean magnetMode = false;
+    private PhotoImporter importer;
+    private List<File> queuedImports = new ArrayList<File>(); // Selected while an import runs
+    private JMenuItem cancelImportMenuItem;
+    private Set<Tag> requiredTags = EnumSet.noneOf(Tag.class); // Tag filter of the grid
+    private Set<Tag> excludedTags = EnumSet.noneOf(Tag.class);
+    private List<JRadioButtonMenuItem> anyTagItems = new ArrayList<JRadioButtonMenuItem>();
 
     public static void main(String[] args) {
         javax.swing.SwingUtilities.invokeLater(new Runnable() {
@@ -97,6 +103,9 @@ public class PhotoAlbum {
         lightTable.setInkColor(inkColor);
         mainFrame.getContentPane().add(lightTable, BorderLayout.CENTER);
         mainFrame.getContentPane().add(createStatusBar(), BorderLayout.SOUTH);
+        if (lightTable.getGestureWarning() != null) {
+            updateStatusBar(lightTable.getGestureWarning());
+        }
         mainFrame.setVisible(true);
 
         return mainFrame;
@@ -109,17 +118,47 @@ public class PhotoAlbum {
         menuBar = new JMenuBar();
         menuBar.add(createFileMenu());
         menuBar.add(createViewMenu());
+        menuBar.add(createFilterMenu());
         menuBar.add(createFormatMenu());
         menuBar.add(createMagnetMenu());
         return menuBar;
     }
 
-    private void showImage(File file) {
-        try {
-            BufferedImage img = ImageIO.read(file);
-            lightTable.addImage(img);
-        } catch (IOException ex) {
-            statusLabel.setText(ex.getMessage()); // Put error message on status bar
+    /**
+     * Imports the given files and directories in the background. Photos are
+     * added to the light table as they finish decoding. Files selected while
+     * an import runs are imported once it finishes.
+     *
+     * @param files files and directories selected by the user
+     */
+    private void importImages(List<File> files) {
+        if (importer != null) {
+            queuedImports.addAll(files);
+            return;
+        }
+        importer = new PhotoImporter(files, lightTable, this);
+        cancelImportMenuItem.setEnabled(true);
+        statusLabel.setText(" Importing...");
+        importer.execute();
+    }
+
+    /**
+     * Called by the PhotoImporter once an import finishes or is cancelled.
+     * The files selected meanwhile are imported next.
+     *
+     * @param finished importer that finished
+     * @param status summary of the import to be shown on the status bar
+     */
+    public void importFinished(PhotoImporter finished, String status) {
+        if (finished != importer) return; // Not the import currently running
+        importer = null;
+        cancelImportMenuItem.setEnabled(false);
+        statusLabel.setText(" " + status);
+        if (!queuedImports.isEmpty()) {
+            List<File> files = queuedImports;
+            queuedImports = new ArrayList<File>();
+            importImages(files);
+            statusLabel.setText(" " + status + ", importing the next selection...");
         }
     }
 
@@ -136,9 +175,11 @@ public class PhotoAlbum {
     private JMenu createFileMenu() {
         JMenu menu;
         FileNameExtensionFilter filter = new FileNameExtensionFilter(
-            "Image Files", "jpg", "png", "gif", "jpeg");
+            "Image Files", PhotoImporter.IMAGE_EXTENSIONS);
         JFileChooser fileChooser = new JFileChooser();
         fileChooser.setFileFilter(filter);
+        fileChooser.setMultiSelectionEnabled(true);
+        fileChooser.setFileSelectionMode(JFileChooser.FILES_AND_DIRECTORIES);
 
         menu = new JMenu("File");
         menu.getAccessibleContext().setAccessibleDescription("File");
@@ -152,19 +193,25 @@ public class PhotoAlbum {
                 statusLabel.setText(" " + e.getActionCommand());
                 int result = fileChooser.showOpenDialog(mainFrame);
                 if (result == JFileChooser.APPROVE_OPTION) {
-                    File file = fileChooser.getSelectedFile();
-                    SwingUtilities.invokeLater(new Runnable() {
-                        public void run() {
-                            showImage(file);
-                        }
-                    });
-                    mainFrame.revalidate();
-                    mainFrame.repaint();
+                    importImages(Arrays.asList(fileChooser.getSelectedFiles()));
                 }
             }
         });
         menu.add(menuItem);
 
+        cancelImportMenuItem = new JMenuItem("Cancel Import");
+        cancelImportMenuItem.getAccessibleContext().setAccessibleDescription("Cancel Import");
+        cancelImportMenuItem.setEnabled(false);
+        cancelImportMenuItem.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                // Files waiting for the running import are dropped too
+                queuedImports.clear();
+                if (importer != null) importer.cancel(true);
+            }
+        });
+        menu.add(cancelImportMenuItem);
+
         menuItem = new JMenuItem("Delete");
         menuItem.getAccessibleContext().setAccessibleDescription("Delete");
         menuItem.addActionListener(new ActionListener() {
@@ -241,6 +288,55 @@ public class PhotoAlbum {
         return viewMenu;
     }
 
+    /**
+     * Creates "Filter" menu for the application's menu bar. Each tag can be
+     * required, excluded or ignored by the filter deciding which photos the
+     * grid and split views show.
+     */
+    private JMenu createFilterMenu() {
+        JMenu filterMenu = new JMenu("Filter");
+
+        menuItem = new JMenuItem("Show All");
+        menuItem.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                requiredTags.clear();
+                excludedTags.clear();
+                for (JRadioButtonMenuItem item : anyTagItems) {
+                    item.setSelected(true);
+                }
+                lightTable.setTagQuery(new TagQuery());
+            }
+        });
+        filterMenu.add(menuItem);
+        filterMenu.addSeparator();
+
+        for (final Tag tag : Tag.values()) {
+            JMenu tagMenu = new JMenu(tag.getTagName());
+            ButtonGroup tagButtonGroup = new ButtonGroup();
+            for (final String choice : new String[] {"Any", "With", "Without"}) {
+                rbMenuItem = new JRadioButtonMenuItem(choice);
+                rbMenuItem.setSelected(choice.equals("Any"));
+                rbMenuItem.addActionListener(new ActionListener() {
+                    @Override
+                    public void actionPerformed(ActionEvent e) {
+                        requiredTags.remove(tag);
+                        excludedTags.remove(tag);
+                        if (choice.equals("With")) requiredTags.add(tag);
+                        else if (choice.equals("Without")) excludedTags.add(tag);
+                        lightTable.setTagQuery(new TagQuery(requiredTags, excludedTags));
+                    }
+                });
+                if (choice.equals("Any")) anyTagItems.add(rbMenuItem);
+                tagButtonGroup.add(rbMenuItem);
+                tagMenu.add(rbMenuItem);
+            }
+            filterMenu.add(tagMenu);
+        }
+
+        return filterMenu;
+    }
+
     private JMenu createFormatMenu() {
         JMenu menu = new JMenu("Format");
         menu.getAccessibleContext().setAccessibleDescription("Format");
@@ -377,6 +473,7 @@ public class PhotoAlbum {
         checkbox.addItemListener(new ItemListener() {
             @Override
             public void itemStateChanged(ItemEvent e) {
+                if (updatingTags) return;
                 statusLabel.setText(" " + Tag.TRAVEL.getTagName());
                 if (e.getStateChange() == ItemEvent.SELECTED) {
                     lightTable.addTag(Tag.TRAVEL);
@@ -391,6 +488,7 @@ public class PhotoAlbum {
         checkbox.addItemListener(new ItemListener() {
             @Override
             public void itemStateChanged(ItemEvent e) {
+                if (updatingTags) return;
                 statusLabel.setText(" " + Tag.FAMILY.getTagName());
                 if (e.getStateChange() == ItemEvent.SELECTED) {
                     lightTable.addTag(Tag.FAMILY);
@@ -405,6 +503,7 @@ public class PhotoAlbum {
         checkbox.addItemListener(new ItemListener() {
             @Override
             public void itemStateChanged(ItemEvent e) {
+                if (updatingTags) return;
                 statusLabel.setText(" " + Tag.SCHOOL.getTagName());
                 if (e.getStateChange() == ItemEvent.SELECTED) {
                     lightTable.addTag(Tag.SCHOOL);
@@ -419,6 +518,7 @@ public class PhotoAlbum {
         checkbox.addItemListener(new ItemListener() {
             @Override
             public void itemStateChanged(ItemEvent e) {
+                if (updatingTags) return;
                 statusLabel.setText(" " + Tag.WORK.getTagName());
                 if (e.getStateChange() == ItemEvent.SELECTED) {
                     lightTable.addTag(Tag.WORK);
@@ -597,13 +697,19 @@ public class PhotoAlbum {
      * @param tags
      */
     public void updateSelectedTags(Set<String> tags) {
-        if (tags == null || tags.isEmpty()) {
-            deselectAllTags();
-        } else {
-            for (JCheckBox checkbox : tagCheckboxes) {
-                if (tags.contains(checkbox.getText())) checkbox.setSelected(true);
-                else checkbox.setSelected(false);
+        // Only the checkboxes change, not the tags of the selected photos
+        updatingTags = true;
+        try {
+            if (tags == null || tags.isEmpty()) {
+                deselectAllTags();
+            } else {
+                for (JCheckBox checkbox : tagCheckboxes) {
+                    if (tags.contains(checkbox.getText())) checkbox.setSelected(true);
+                    else checkbox.setSelected(false);
+                }
             }
+        } finally {
+            updatingTags = false;
         }
     }
 
@@ -9,64 +9,122 @@
 
 import java.awt.*;
 import java.awt.event.*;
+import java.awt.image.BufferedImage;
 import javax.swing.*;
 import java.util.Set;
-import java.util.HashSet;
 import java.util.List;
-import java.util.ArrayList;
-import java.util.Collections;
 
 public class PhotoComponent extends JComponent {
 
-    private Image img;
+    private final int STROKE_MARGIN = 3;
+    private final double DEFAULT_STROKE_TOLERANCE = 1.5; // Half the stroke's width
+
+    private Photo photo;
+    private Runnable repainter = new Runnable() {
+        @Override
+        public void run() {
+            repaint();
+        }
+    };
     private LightTable lightTable;
-    private boolean flipped = false;
     private AnnotationMode annotationMode;
-    private Set<String> tags;
     private JScrollPane scrollPane;
     private int windowWidth, windowHeight;
     private int imgWidth, imgHeight;
     private Graphics2D g2;
     private Color inkColor;
     // All annotations drawn, i.e., lines and post-its
-    private List<Annotation> annotations = new ArrayList<Annotation>();
+    private List<Annotation> annotations;
+    private AnnotationIndex annotationIndex;
     private PolyLine currentLine; // Line drawn when AnnotationMode == DRAWING
     private PostIt currentPostIt; // Post-It drawn when AnnotationMode == TEXT
     private int rectX, rectY, originX, originY, width, height; // Post-It data
     private String s = ""; // Text drawn on post-it
     private GestureRecognizer gestureRecognizer;
+    // Drop redundant points of lines and gestures while they are drawn
+    private StrokeSimplifier lineSimplifier = new StrokeSimplifier(DEFAULT_STROKE_TOLERANCE);
+    private StrokeSimplifier gestureSimplifier = new StrokeSimplifier(DEFAULT_STROKE_TOLERANCE);
     private boolean rightClick = false;
     private PolyLine currentGestureLine;
     private boolean annotationsSelected = false;
     private boolean dragging = false;
     private int dragOriginX, dragOriginY;
+    // Lines drawn on the visible part of the photo's back, so repaints only
+    // copy pixels. Post-its are few and drawn on top of it on every repaint.
+    private BufferedImage annotationLayer;
+    private Rectangle annotationLayerBounds = new Rectangle(); // In image coordinates
+    private boolean annotationLayerValid = false;
 
     /**
-     * Creates a new PhotoComponent.
-     *
-     * @param img image to be drawn on the PhotoComponent
+     * Creates a new PhotoComponent. A single PhotoComponent is shared by all
+     * photos; setPhoto decides which one it shows. The photo itself is kept
+     * in the LightTable's PhotoStore, and is decoded in the background
+     * whenever it is painted but not in memory.
      */
-    public PhotoComponent(Image img, LightTable lightTable) {
+    public PhotoComponent(LightTable lightTable) {
         super();
-        this.img = img;
         this.lightTable = lightTable;
         inkColor = Color.black;
-        tags = new HashSet<String>();
-        if (img != null) {
-            this.setSize(new Dimension(img.getWidth(null), img.getHeight(null)));
-            this.setPreferredSize(new Dimension(img.getWidth(null), img.getHeight(null)));
-        } else {
-            this.setSize(new Dimension(640, 480));
-            this.setPreferredSize(new Dimension(640, 480));
-        }
         scrollPane = new JScrollPane(this);
         scrollPane.getViewport().setBackground(Color.gray);
         scrollPane.setHorizontalScrollBarPolicy(
             JScrollPane.HORIZONTAL_SCROLLBAR_ALWAYS);
         scrollPane.setVerticalScrollBarPolicy(
             JScrollPane.VERTICAL_SCROLLBAR_ALWAYS);
-            gestureRecognizer = new GestureRecognizer();
-        if (img != null) addListeners();
+        gestureRecognizer = new GestureRecognizer();
+        addListeners();
+        setPhoto(null);
+    }
+
+    /**
+     * Get the reason the gesture settings the user chose couldn't be used.
+     *
+     * @return warning, or null if they are used
+     */
+    public String getGestureWarning() {
+        return gestureRecognizer.getWarning();
+    }
+
+    /**
+     * Shows the given photo. Anything the user was in the middle of on the
+     * previous photo, e.g. an annotation selection, is dropped.
+     *
+     * @param photo photo to be shown, or null to show nothing
+     */
+    public void setPhoto(Photo photo) {
+        if (this.photo != null && this.photo == photo) return;
+        finishDrag();
+        if (annotationsSelected) deselectAnnotations();
+        annotationsSelected = false;
+        currentLine = null;
+        currentPostIt = null;
+        currentGestureLine = null;
+        invalidateAnnotationLayer();
+        this.photo = photo;
+        if (photo != null) {
+            imgWidth = photo.getWidth();
+            imgHeight = photo.getHeight();
+            annotations = photo.getAnnotations();
+            annotationIndex = photo.getAnnotationIndex();
+            this.setPreferredSize(new Dimension(imgWidth, imgHeight));
+        } else {
+            imgWidth = 0;
+            imgHeight = 0;
+            annotations = null;
+            annotationIndex = null;
+            this.setPreferredSize(new Dimension(640, 480));
+        }
+        revalidate();
+        repaint();
+    }
+
+    /**
+     * Get the photo currently shown.
+     *
+     * @return photo, or null
+     */
+    public Photo getPhoto() {
+        return photo;
     }
 
     public JScrollPane getPhotoComponentScrollPane() {
@@ -77,7 +135,17 @@ public class PhotoComponent extends JComponent {
         scrollPane.setVisible(false);
     }
 
+    /**
+     * Get the full-resolution photo, starting to decode it if it isn't in
+     * memory.
+     *
+     * @return photo, or null if it hasn't been decoded yet
+     */
     public Image getImage() {
+        if (photo == null) return null;
+        PhotoStore photoStore = lightTable.getPhotoStore();
+        Image img = photoStore.get(photo.getFile());
+        if (img == null) photoStore.load(photo.getFile(), repainter);
         return img;
     }
 
@@ -99,17 +167,23 @@ public class PhotoComponent extends JComponent {
         // Update width and height variables on repaint
         windowWidth = scrollPane.getWidth();
         windowHeight = scrollPane.getHeight();
-        if (img != null) {
-            imgWidth = img.getWidth(null);
-            imgHeight = img.getHeight(null);
-            if (!flipped) {
-                g2.drawImage(img, getImageX(), getImageY(), null);
+        if (photo != null) {
+            if (!isFlipped()) {
+                Image img = getImage();
+                // Shown in place of the photo while it is being decoded
+                Image preview = img == null ? lightTable.getThumbnailStore().getBase(photo) : null;
+                if (img != null) {
+                    g2.drawImage(img, getImageX(), getImageY(), null);
+                } else if (preview != null) {
+                    g2.drawImage(preview, getImageX(), getImageY(), imgWidth, imgHeight, null);
+                }
             } else {
-                g2.fillRect(getImageX(), getImageY(), imgWidth, imgHeight);
-                g2.setColor(inkColor);
                 // Draw lines first
-                for (Annotation a : annotations) {
-                    if (a instanceof PolyLine) a.draw(g2, getImageX(), getImageY());
+                paintAnnotationLayer(g2);
+                if (dragging) { // The dragged lines aren't part of the layer
+                    for (Annotation a : annotations) {
+                        if (a instanceof PolyLine && a.isSelected()) a.draw(g2, getImageX(), getImageY());
+                    }
                 }
                 // Then draw postits on top
                 for (Annotation a : annotations) {
@@ -130,46 +204,48 @@ public class PhotoComponent extends JComponent {
     }
 
     /**
-     * Adds a single tag to the PhotoComponent.
+     * Adds a single tag to the photo shown.
      *
      * @param tag
      */
     public void addTag(Tag tag) {
-        tags.add(tag.getTagName());
+        if (photo != null) lightTable.addTag(photo, tag);
     }
 
     /**
-     * Adds multiple tags to the PhotoComponent.
+     * Adds multiple tags to the photo shown.
      *
      * @param tags
      */
     public void addMultipleTags(List<Tag> tags) {
         for (Tag tag : tags) {
-            this.tags.add(tag.getTagName());
+            addTag(tag);
         }
     }
 
     /**
-     * Removes a single tag from the PhotoComponent.
+     * Removes a single tag from the photo shown.
      *
      * @param tag
      */
     public void removeTag(Tag tag) {
-        tags.remove(tag.getTagName());
+        if (photo != null) lightTable.removeTag(photo, tag);
     }
 
     /**
-     * Removes all tags from the PhotoComponent.
+     * Removes all tags from the photo shown.
      */
     public void removeAllTags() {
-        tags.clear();
+        for (Tag tag : Tag.values()) {
+            removeTag(tag);
+        }
     }
 
     /**
-     * Returns a set containing the PhotoComponent's tags.
+     * Returns a set containing the names of the shown photo's tags.
      */
     public Set<String> getTags() {
-        return tags;
+        return photo != null ? photo.getTags() : null;
     }
 
     /**
@@ -181,6 +257,17 @@ public class PhotoComponent extends JComponent {
         this.inkColor = color;
     }
 
+    /**
+     * Sets how far the points dropped from lines and gestures while they
+     * are drawn may be from what is kept.
+     *
+     * @param tolerance distance in pixels, or 0 to keep every point
+     */
+    public void setStrokeTolerance(double tolerance) {
+        lineSimplifier.setTolerance(tolerance);
+        gestureSimplifier.setTolerance(tolerance);
+    }
+
     /**
      * Adds all necessary listeners to the PhotoComponent.
      */
@@ -196,8 +283,8 @@ public class PhotoComponent extends JComponent {
                     }
                 } else if (e.getClickCount() == 2) {
                     Point p = e.getPoint();
-                    if (imageWasClicked(p)) {
-                        flipped = !flipped;
+                    if (photo != null && imageWasClicked(p)) {
+                        photo.setFlipped(!photo.isFlipped());
                         repaint();
                     }
                 }
@@ -210,20 +297,23 @@ public class PhotoComponent extends JComponent {
                 if (SwingUtilities.isRightMouseButton(e)) rightClick = true;
                 else rightClick = false;
                 Point p = e.getPoint();
+                if (photo == null) return;
                 if (rightClick) { // Gestures
                     int x = e.getX();
                     int y = e.getY();
                     currentGestureLine = new PolyLine();
                     currentGestureLine.setInkColor(Color.RED);
-                    currentGestureLine.addPoint(x, y);
-                } else if (flipped && !rightClick) {
+                    gestureSimplifier.addPoint(currentGestureLine, x, y);
+                    gestureRecognizer.startGesture(x, y);
+                } else if (isFlipped() && !rightClick) {
                     int x = e.getX();
                     int y = e.getY();
                     if (annotationsSelected && annotationWasClicked(x - getImageX(), y - getImageY())) {
                         dragOriginX = e.getX();
                         dragOriginY = e.getY();
                         dragging = true;
-                        savePrevCoordinates();
+                        // Selected annotations are drawn on top while dragged
+                        invalidateAnnotationLayer();
                     } else if (imageWasClicked(p)) {
                         if (annotationsSelected) {
                             deselectAnnotations();
@@ -236,13 +326,15 @@ public class PhotoComponent extends JComponent {
                             currentLine = new PolyLine();
                             currentLine.setInkColor(inkColor);
                             annotations.add(currentLine);
-                            currentLine.addPoint(x, y);
+                            lineSimplifier.addPoint(currentLine, x, y);
+                            annotationIndex.pointAdded(currentLine);
                         } else {
                             currentPostIt = new PostIt();
                             originX = e.getX() - getImageX();
                             originY = e.getY() - getImageY();
                             currentPostIt.setStartCoordinates(originX, originY);
                             annotations.add(currentPostIt);
+                            annotationIndex.add(currentPostIt);
                         }
                     }
                 }
@@ -253,16 +345,22 @@ public class PhotoComponent extends JComponent {
             @Override
             public void mouseDragged(MouseEvent e) {
                 Point p = e.getPoint();
+                if (photo == null) return;
                 if (rightClick) { // Gestures
                     int x = e.getX();
                     int y = e.getY();
-                    currentGestureLine.addPoint(x, y);
+                    gestureRecognizer.addPoint(x, y);
+                    if (gestureSimplifier.addPoint(currentGestureLine, x, y)) {
+                        repaintLastSegment(currentGestureLine, 0, 0);
+                    }
                 } else if (dragging) {
                     // change coordinates of annotations
                     int x = e.getX();
                     int y = e.getY();
+                    Rectangle oldBounds = getSelectionBounds();
                     updateAnnotationCoordinates(x - dragOriginX, y - dragOriginY);
-                } else if (flipped && imageWasClicked(p) && !rightClick) { // Annotations
+                    repaint(oldBounds.union(getSelectionBounds()));
+                } else if (isFlipped() && imageWasClicked(p) && !rightClick) { // Annotations
                     int x = e.getX() - getImageX();
                     int y = e.getY() - getImageY();
                     if (drawing()) {
@@ -271,9 +369,14 @@ public class PhotoComponent extends JComponent {
                             currentLine.setInkColor(inkColor);
                             annotations.add(currentLine);
                         }
-                        currentLine.addPoint(x, y);
+                        if (lineSimplifier.addPoint(currentLine, x, y)) {
+                            annotationIndex.pointAdded(currentLine);
+                            appendToAnnotationLayer(currentLine);
+                            repaintLastSegment(currentLine, getImageX(), getImageY());
+                        }
                     } else {
                         if (currentPostIt != null) {
+                            Rectangle oldBounds = getPostItBounds(currentPostIt);
                             // Update coordinates if dragging in negative direction
                             if (x < originX) {
                                 rectX = x;
@@ -291,86 +394,37 @@ public class PhotoComponent extends JComponent {
                                 height = y - originY;
                             }
                             currentPostIt.setHeight(height);
+                            annotationIndex.update(currentPostIt);
+                            repaint(oldBounds.union(getPostItBounds(currentPostIt)));
                         }
                     }
                 }
-                repaint();
             }
         });
 
         this.addMouseListener(new MouseAdapter() {
             @Override
             public void mouseReleased(MouseEvent e) {
-                if (!flipped && rightClick) { // Gestures for UNFLIPPED photo
-                    String directionVector = gestureRecognizer.buildDirectionVector(currentGestureLine);
-                    String matchedGesture = gestureRecognizer.matchGesture(directionVector, false);
-                    switch (matchedGesture) {
-                        case Gestures.RIGHT_ANGLE:
-                            lightTable.updateStatus(">");
-                            lightTable.next();
-                            break;
-                        case Gestures.LEFT_ANGLE:
-                            lightTable.updateStatus("<");
-                            lightTable.previous();
-                            break;
-                        case Gestures.UP_ARROW:
-                            if (tags.contains(Tag.TRAVEL.getTagName())) removeTag(Tag.TRAVEL);
-                            else addTag(Tag.TRAVEL);
-                            lightTable.updateStatus(Tag.TRAVEL.getTagName());
-                            lightTable.updateTags(tags);
-                            break;
-                        case Gestures.DOWN_ARROW:
-                            if (tags.contains(Tag.FAMILY.getTagName())) removeTag(Tag.FAMILY);
-                            else addTag(Tag.FAMILY);
-                            lightTable.updateStatus(Tag.FAMILY.getTagName());
-                            lightTable.updateTags(tags);
-                            break;
-                        case Gestures.W:
-                            if (tags.contains(Tag.WORK.getTagName())) removeTag(Tag.WORK);
-                            else addTag(Tag.WORK);
-                            lightTable.updateStatus(Tag.WORK.getTagName());
-                            lightTable.updateTags(tags);
-                            break;
-                        case Gestures.S:
-                            if (tags.contains(Tag.SCHOOL.getTagName())) removeTag(Tag.SCHOOL);
-                            else addTag(Tag.SCHOOL);
-                            lightTable.updateStatus(Tag.SCHOOL.getTagName());
-                            lightTable.updateTags(tags);
-                            break;
-                        case Gestures.LOWERCASE_PHI:
-                            lightTable.updateStatus("Delete");
-                            lightTable.deleteCurrentPhoto();
-                            break;
-                        default:
-                            lightTable.updateStatus("Unrecognized gesture");
-                            break;
-                    }
+                if (photo == null || (rightClick && currentGestureLine == null)) return;
+                if (!isFlipped() && rightClick) { // Gestures for UNFLIPPED photo
+                    performGesture(gestureRecognizer.finishGesture(false));
                     currentGestureLine = null;
-                } else if (flipped && !rightClick) {
+                } else if (isFlipped() && !rightClick) {
                     // Annotation done
-                    if (drawing()) currentLine = null;
-                } else if (flipped && rightClick) { // Gestures for FLIPPED photo
-                    String directionVector = gestureRecognizer.buildDirectionVector(currentGestureLine);
-                    String matchedGesture = gestureRecognizer.matchGesture(directionVector, true);
-                    if (matchedGesture.equals(Gestures.CIRCLE)) {
-                        int count = 0;
-                        for (Annotation a : annotations) {
-                            if (annotationWasSelected(a)) count++;
-                        }
-                        if (count > 0) annotationsSelected = true;
-                        lightTable.updateStatus("Selection");
-                    } else if (matchedGesture.equals(Gestures.LOWERCASE_PHI)) {
-                        if (annotationsSelected) { // Delete annotations selected (if any)
-                            deleteSelectedAnnotations();
+                    if (drawing() && currentLine != null) {
+                        // The layer still shows the points removed, so it
+                        // is redrawn with the line as stored
+                        if (lineSimplifier.finish(currentLine) > 0) {
+                            annotationIndex.update(currentLine);
+                            invalidateAnnotationLayer();
                         }
-                        annotationsSelected = false;
-                        lightTable.updateStatus("Delete");
-                    } else {
-                        lightTable.updateStatus("Unrecognized gesture");
+                        currentLine = null;
                     }
+                } else if (isFlipped() && rightClick) { // Gestures for FLIPPED photo
+                    performGesture(gestureRecognizer.finishGesture(true));
                     currentGestureLine = null;
                 }
-                dragging = false;
+                finishDrag();
                 repaint();
             }
         });
@@ -378,7 +432,8 @@ public class PhotoComponent extends JComponent {
         this.addKeyListener(new KeyAdapter() {
             @Override
             public void keyPressed(KeyEvent e) {
-                if (flipped && text() && currentPostIt != null) {
+                if (isFlipped() && text() && currentPostIt != null) {
+                    Rectangle oldBounds = getPostItBounds(currentPostIt);
                     char typedText = e.getKeyChar();
                     // Backspace functionality
                     if (typedText == KeyEvent.VK_BACK_SPACE || e.getKeyChar() == KeyEvent.VK_DELETE) {
@@ -388,7 +443,10 @@ public class PhotoComponent extends JComponent {
                         currentPostIt.addText(s);
                         s = "";
                     }
-                    repaint();
+                    // A post-it grows to fit text typed past its edge
+                    currentPostIt.fitText(getFontMetrics(getFont()));
+                    annotationIndex.update(currentPostIt);
+                    repaint(oldBounds.union(getPostItBounds(currentPostIt)));
                 }
             }
 
@@ -420,59 +478,88 @@ public class PhotoComponent extends JComponent {
     }
 
     /**
-     * Check if an annotation was selected, and update the annotation's
-     * selected state.
+     * Performs the action bound to a gesture drawn on the photo shown.
      *
-     * @return true if the image was clicked
+     * @param gesture gesture recognized, or null if none was
      */
-    private boolean annotationWasSelected(Annotation annotation) {
-        int circleMinX, circleMinY, circleMaxX, circleMaxY;
-        ArrayList<Integer> circleXCoords = currentGestureLine.getXList();
-        ArrayList<Integer> circleYCoords = currentGestureLine.getYList();
-        circleMinX = Collections.min(circleXCoords);
-        circleMinY = Collections.min(circleYCoords);
-        circleMaxX = Collections.max(circleXCoords);
-        circleMaxY = Collections.max(circleYCoords);
-        int x, y;
-        if (annotation instanceof PolyLine) {
-            ArrayList<Integer> xCoords = ((PolyLine)annotation).getXList();
-            ArrayList<Integer> yCoords = ((PolyLine)annotation).getYList();
-            boolean xInCircle, yInCircle;
-            for (int i = 0; i < xCoords.size(); i++) {
-                x = xCoords.get(i) + getImageX();
-                y = yCoords.get(i) + getImageY();
-                xInCircle = (x >= circleMinX) && (x <= circleMaxX);
-                yInCircle = (y >= circleMinY) && (y <= circleMaxY);
-                if (!(xInCircle && yInCircle)) return false;
-            }
-        } else {
-            x = ((PostIt)annotation).getX() + getImageX();
-            y = ((PostIt)annotation).getY() + getImageY();
-            int width = ((PostIt)annotation).getWidth();
-            int height = ((PostIt) annotation).getHeight();
-            if (!((x >= circleMinX) && (x + width <= circleMaxX)
-                && (y >= circleMinY) && (y + height <= circleMaxY))) {
-                return false;
-            }
+    private void performGesture(GestureBinding gesture) {
+        if (gesture == null) {
+            lightTable.updateStatus("Unrecognized gesture");
+            return;
+        }
+        switch (gesture.getAction()) {
+            case NEXT:
+                lightTable.updateStatus(">");
+                lightTable.next();
+                break;
+            case PREVIOUS:
+                lightTable.updateStatus("<");
+                lightTable.previous();
+                break;
+            case TAG:
+                Tag tag = gesture.getTag();
+                if (photo.hasTag(tag)) removeTag(tag);
+                else addTag(tag);
+                lightTable.updateStatus(tag.getTagName());
+                lightTable.updateTags(photo.getTags());
+                break;
+            case DELETE:
+                lightTable.updateStatus("Delete");
+                if (!isFlipped()) {
+                    lightTable.deleteCurrentPhoto();
+                } else if (annotationsSelected) { // Delete annotations selected (if any)
+                    deleteSelectedAnnotations();
+                    annotationsSelected = false;
+                }
+                break;
+            case SELECT:
+                if (!isFlipped()) {
+                    lightTable.updateStatus("Unrecognized gesture");
+                    break;
+                }
+                if (selectAnnotationsInCircle() > 0) {
+                    annotationsSelected = true;
+                    invalidateAnnotationLayer();
+                }
+                lightTable.updateStatus("Selection");
+                break;
+        }
+    }
+
+    /**
+     * Selects the annotations lying completely inside the circle gesture.
+     *
+     * @return number of annotations selected
+     */
+    private int selectAnnotationsInCircle() {
+        if (currentGestureLine.size() < 3) return 0;
+        // The gesture is drawn in component coordinates, annotations are
+        // stored in image coordinates
+        Polygon lasso = new Polygon();
+        for (int i = 0; i < currentGestureLine.size(); i++) {
+            lasso.addPoint(currentGestureLine.getX(i) - getImageX(),
+                currentGestureLine.getY(i) - getImageY());
+        }
+        List<Annotation> selected = annotationIndex.queryInside(lasso);
+        for (Annotation annotation : selected) {
+            annotation.setSelected(true);
+            annotation.setInkColor(Color.RED);
         }
-        annotation.setSelected(true);
-        annotation.setInkColor(Color.RED);
-        return true;
+        return selected.size();
     }
 
     /**
      * Check if a selected annotation was clicked for dragging.
      */
     private boolean annotationWasClicked(int x, int y) {
-        for (Annotation a : annotations) {
+        for (Annotation a : annotationIndex.query(new Rectangle(x - 5, y - 5, 10, 10))) {
             if (a.isSelected()) {
                 if (a instanceof PolyLine) {
-                    ArrayList<Integer> xCoords = ((PolyLine)a).getXList();
-                    ArrayList<Integer> yCoords = ((PolyLine)a).getYList();
+                    PolyLine line = (PolyLine)a;
                     int currX, currY, diffX, diffY;
-                    for (int i = 0; i < xCoords.size(); i++) {
-                        currX = xCoords.get(i);
-                        currY = yCoords.get(i);
+                    for (int i = 0; i < line.size(); i++) {
+                        currX = line.getX(i);
+                        currY = line.getY(i);
                         diffX = x - currX;
                         diffY = y - currY;
                         // Account for a click not happening exactly on the line
@@ -491,41 +578,51 @@ public class PhotoComponent extends JComponent {
     }
 
     /**
-     * Update selected annotation's x and y coordinates.
+     * Update selected annotation's x and y coordinates. Only the annotations'
+     * translation changes until the drag is done.
      */
     private void updateAnnotationCoordinates(int x, int y) {
         for (Annotation a : annotations) {
-            if (a instanceof PostIt && a.isSelected()) { // PostIt
-                int postItX = ((PostIt)a).getPrevX();
-                int postItY = ((PostIt)a).getPrevY();
-                ((PostIt)a).setStartCoordinates(postItX + x,  postItY + y);
-            } else if (a instanceof PolyLine && a.isSelected()) {
-                // PolyLine
-                ArrayList<Integer> prevXList = ((PolyLine)a).getPrevX();
-                ArrayList<Integer> prevYList = ((PolyLine)a).getPrevY();
-                ArrayList<Integer> newXList = new ArrayList<Integer>();
-                ArrayList<Integer> newYList = new ArrayList<Integer>();
-                int currX, currY;
-                for (int i = 0; i < prevXList.size(); i++) {
-                    currX = prevXList.get(i);
-                    currY = prevYList.get(i);
-                    newXList.add(currX + x);
-                    newYList.add(currY + y);
-                }
-                ((PolyLine)a).setCoordinates(newXList, newYList);
-            }
+            if (a.isSelected()) a.setTranslation(x, y);
         }
     }
 
     /**
-     * Save an annotations previous coordinates for dragging reference.
+     * Moves the dragged annotations to where they were dropped.
      */
-    private void savePrevCoordinates() {
+    private void finishDrag() {
+        if (!dragging) return;
         for (Annotation a : annotations) {
             if (a.isSelected()) {
-                a.savePrevCoordinates();
+                annotationIndex.remove(a);
+                a.commitTranslation();
+                annotationIndex.add(a);
+            }
+        }
+        dragging = false;
+        invalidateAnnotationLayer();
+    }
+
+    /**
+     * Get the area covered by the selected annotations on the component.
+     *
+     * @return bounds of the selection
+     */
+    private Rectangle getSelectionBounds() {
+        Rectangle bounds = null;
+        for (Annotation a : annotations) {
+            if (!a.isSelected()) continue;
+            Rectangle r;
+            if (a instanceof PolyLine) {
+                r = ((PolyLine)a).getBounds();
+                r.translate(getImageX(), getImageY());
+                r.grow(STROKE_MARGIN, STROKE_MARGIN);
+            } else {
+                r = getPostItBounds((PostIt)a);
             }
+            bounds = bounds == null ? r : bounds.union(r);
         }
+        return bounds != null ? bounds : new Rectangle();
     }
 
     /**
@@ -536,10 +633,12 @@ public class PhotoComponent extends JComponent {
         for (int i = 0; i < annotations.size(); i++) {
             curr = annotations.get(i);
             if (curr.isSelected()) {
+                annotationIndex.remove(curr);
                 annotations.remove(i);
                 i--;
             }
         }
+        invalidateAnnotationLayer();
     }
 
     /**
@@ -553,6 +652,108 @@ public class PhotoComponent extends JComponent {
                 else a.setInkColor(inkColor);
             }
         }
+        invalidateAnnotationLayer();
+    }
+
+    /**
+     * Draws the lines on the back of the photo by copying the annotation
+     * layer, which is only redrawn if the lines changed or a different part
+     * of the photo became visible.
+     *
+     * @param g2 Graphics context
+     */
+    private void paintAnnotationLayer(Graphics2D g2) {
+        Rectangle visible = getVisibleRect().intersection(
+            new Rectangle(getImageX(), getImageY(), imgWidth, imgHeight));
+        if (visible.isEmpty()) return;
+        visible.translate(-getImageX(), -getImageY());
+        if (!annotationLayerValid || !visible.equals(annotationLayerBounds)) {
+            renderAnnotationLayer(visible);
+        }
+        g2.drawImage(annotationLayer, getImageX() + annotationLayerBounds.x,
+            getImageY() + annotationLayerBounds.y, null);
+    }
+
+    /**
+     * Redraws all lines onto the annotation layer.
+     *
+     * @param bounds part of the photo covered by the layer, in image
+     * coordinates
+     */
+    private void renderAnnotationLayer(Rectangle bounds) {
+        if (annotationLayer == null || annotationLayer.getWidth() != bounds.width
+            || annotationLayer.getHeight() != bounds.height) {
+            GraphicsConfiguration gc = getGraphicsConfiguration();
+            if (gc != null) {
+                annotationLayer = gc.createCompatibleImage(bounds.width, bounds.height);
+            } else {
+                annotationLayer = new BufferedImage(bounds.width, bounds.height, BufferedImage.TYPE_INT_RGB);
+            }
+        }
+        annotationLayerBounds = bounds;
+        Graphics2D g2 = annotationLayer.createGraphics();
+        g2.setColor(Color.white);
+        g2.fillRect(0, 0, bounds.width, bounds.height);
+        for (Annotation a : annotations) {
+            if (a instanceof PolyLine && !(dragging && a.isSelected())) {
+                a.draw(g2, -bounds.x, -bounds.y);
+            }
+        }
+        g2.dispose();
+        annotationLayerValid = true;
+    }
+
+    /**
+     * Draws the newest segment of a line that is being drawn onto the
+     * annotation layer, so the rest of the layer doesn't have to be redrawn.
+     *
+     * @param line line whose last point was just added or moved
+     */
+    private void appendToAnnotationLayer(PolyLine line) {
+        if (!annotationLayerValid) return; // Redrawn completely on the next repaint
+        Graphics2D g2 = annotationLayer.createGraphics();
+        line.drawLastSegment(g2, -annotationLayerBounds.x, -annotationLayerBounds.y);
+        g2.dispose();
+    }
+
+    /**
+     * Repaints the area covered by the segment ending at a line's last
+     * point.
+     *
+     * @param line line whose last point was just added or moved
+     * @param xOffset offset of the line's coordinate space
+     * @param yOffset offset of the line's coordinate space
+     */
+    private void repaintLastSegment(PolyLine line, int xOffset, int yOffset) {
+        int last = line.size() - 1;
+        if (last < 0) return;
+        int first = Math.max(0, last - 1);
+        int minX = Math.min(line.getX(first), line.getX(last)) + xOffset;
+        int minY = Math.min(line.getY(first), line.getY(last)) + yOffset;
+        int maxX = Math.max(line.getX(first), line.getX(last)) + xOffset;
+        int maxY = Math.max(line.getY(first), line.getY(last)) + yOffset;
+        // Leave room for the stroke's width, and for the segment the last
+        // point may have moved from
+        int margin = STROKE_MARGIN + (int)Math.ceil(lineSimplifier.getTolerance());
+        repaint(minX - margin, minY - margin, maxX - minX + 2 * margin + 1, maxY - minY + 2 * margin + 1);
+    }
+
+    /**
+     * Get the area a post-it covers on the component.
+     *
+     * @param postIt
+     * @return post-it bounds
+     */
+    private Rectangle getPostItBounds(PostIt postIt) {
+        return new Rectangle(postIt.getX() + getImageX(), postIt.getY() + getImageY(),
+            postIt.getWidth() + 1, postIt.getHeight() + 1);
+    }
+
+    /**
+     * Marks the annotation layer as out of date after lines were changed.
+     */
+    private void invalidateAnnotationLayer() {
+        annotationLayerValid = false;
     }
 
     /**
@@ -637,4 +838,13 @@ public class PhotoComponent extends JComponent {
     private boolean text() {
         return this.annotationMode == AnnotationMode.TEXT;
     }
+
+    /**
+     * Check if the photo shown is flipped, showing its annotations.
+     *
+     * @return true if the photo is flipped
+     */
+    private boolean isFlipped() {
+        return photo != null && photo.isFlipped();
+    }
 }
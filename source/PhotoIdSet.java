@@ -0,0 +1,207 @@
+/**
+ * PhotoIdSet
+ * A set of photo identifiers that can also tell the position of an
+ * identifier among the others, and the identifier at a given position, in
+ * logarithmic time. Identifiers are kept as bits, and a Fenwick tree over
+ * the number of bits set in each word of 64 bits keeps the positions.
+ * Since photos are only ever added at the end of the library, positions
+ * in identifier order are positions in library order.
+ * CS 4470 - User Interface Software
+ * apl7@gatech.edu
+ *
+ * @author Alejandrina Patron Lopez
+ * @version 1.0
+ */
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+public class PhotoIdSet {
+
+    private long[] words = new long[1];
+    private int[] counts = new int[2]; // Fenwick tree of the bits set in each word, from 1
+    private int size = 0;
+
+    /**
+     * Adds an identifier.
+     *
+     * @param id
+     * @return true if the set didn't contain it yet
+     */
+    public boolean add(int id) {
+        if (id / 64 >= words.length) grow(id / 64 + 1);
+        long bit = 1L << id;
+        if ((words[id / 64] & bit) != 0) return false;
+        words[id / 64] |= bit;
+        addCount(id / 64, 1);
+        size++;
+        return true;
+    }
+
+    /**
+     * Removes an identifier.
+     *
+     * @param id
+     * @return true if the set contained it
+     */
+    public boolean remove(int id) {
+        if (!contains(id)) return false;
+        words[id / 64] &= ~(1L << id);
+        addCount(id / 64, -1);
+        size--;
+        return true;
+    }
+
+    /**
+     * Check if the set contains an identifier.
+     *
+     * @param id
+     * @return true if it does
+     */
+    public boolean contains(int id) {
+        return id / 64 < words.length && (words[id / 64] & (1L << id)) != 0;
+    }
+
+    /**
+     * Get the number of identifiers in the set.
+     *
+     * @return size
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the number of identifiers in the set smaller than the given one,
+     * i.e., the position it has, or would have, in the set.
+     *
+     * @param id
+     * @return position
+     */
+    public int rank(int id) {
+        int word = Math.min(id / 64, words.length);
+        int rank = 0;
+        for (int i = word; i > 0; i -= i & -i) {
+            rank += counts[i];
+        }
+        if (word < words.length) rank += Long.bitCount(words[word] & ((1L << id) - 1));
+        return rank;
+    }
+
+    /**
+     * Get the identifier at the given position of the set.
+     *
+     * @param position position, from 0
+     * @return identifier, or -1 if the set isn't that large
+     */
+    public int select(int position) {
+        if (position < 0 || position >= size) return -1;
+        // Find the word holding it by walking down the tree
+        int word = 0;
+        for (int step = Integer.highestOneBit(words.length); step > 0; step /= 2) {
+            if (word + step <= words.length && counts[word + step] <= position) {
+                word += step;
+                position -= counts[word];
+            }
+        }
+        long bits = words[word];
+        for (int i = 0; i < position; i++) {
+            bits &= bits - 1; // Drops the lowest bit set
+        }
+        return 64 * word + Long.numberOfTrailingZeros(bits);
+    }
+
+    /**
+     * Replaces the identifiers in the set.
+     *
+     * @param ids
+     */
+    public void set(BitSet ids) {
+        long[] bits = ids.toLongArray();
+        words = Arrays.copyOf(bits, Math.max(1, bits.length));
+        rebuild();
+    }
+
+    /**
+     * Adds many identifiers at once, in time linear in the largest one
+     * rather than logarithmic per identifier.
+     *
+     * @param ids
+     */
+    public void addAll(BitSet ids) {
+        long[] bits = ids.toLongArray();
+        if (bits.length > words.length) words = Arrays.copyOf(words, bits.length);
+        for (int i = 0; i < bits.length; i++) {
+            words[i] |= bits[i];
+        }
+        rebuild();
+    }
+
+    /**
+     * Removes many identifiers at once.
+     *
+     * @param ids
+     */
+    public void removeAll(BitSet ids) {
+        long[] bits = ids.toLongArray();
+        for (int i = 0; i < Math.min(bits.length, words.length); i++) {
+            words[i] &= ~bits[i];
+        }
+        rebuild();
+    }
+
+    /**
+     * Removes the identifiers that aren't in the given ones.
+     *
+     * @param ids
+     */
+    public void retainAll(BitSet ids) {
+        long[] bits = ids.toLongArray();
+        for (int i = 0; i < words.length; i++) {
+            words[i] &= i < bits.length ? bits[i] : 0;
+        }
+        rebuild();
+    }
+
+    /**
+     * Removes every identifier.
+     */
+    public void clear() {
+        Arrays.fill(words, 0);
+        rebuild();
+    }
+
+    /**
+     * Get the identifiers in the set.
+     *
+     * @return identifiers, which may be modified
+     */
+    public BitSet toBitSet() {
+        return BitSet.valueOf(words);
+    }
+
+    private void addCount(int word, int delta) {
+        for (int i = word + 1; i <= words.length; i += i & -i) {
+            counts[i] += delta;
+        }
+    }
+
+    private void grow(int minWords) {
+        words = Arrays.copyOf(words, Math.max(minWords, 2 * words.length));
+        rebuild();
+    }
+
+    /**
+     * Builds the tree again from the words, in linear time.
+     */
+    private void rebuild() {
+        counts = new int[words.length + 1];
+        size = 0;
+        for (int i = 0; i < words.length; i++) {
+            counts[i + 1] += Long.bitCount(words[i]);
+            size += Long.bitCount(words[i]);
+            int parent = (i + 1) + ((i + 1) & -(i + 1));
+            if (parent <= words.length) counts[parent] += counts[i + 1];
+        }
+    }
+}
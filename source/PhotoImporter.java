@@ -0,0 +1,244 @@
+/**
+ * PhotoImporter
+ * Decodes thumbnails of imported photos on a pool of worker threads and hands
+ * them to the LightTable in batches, so the Event Dispatch Thread never blocks
+ * on ImageIO. Thumbnails found in the ThumbnailCache aren't decoded at all, and
+ * full-resolution photos are only decoded once they are viewed.
+ * CS 4470 - User Interface Software
+ * apl7@gatech.edu
+ *
+ * @author Alejandrina Patron Lopez
+ * @version 1.0
+ */
+
+import javax.swing.SwingWorker;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+public class PhotoImporter extends SwingWorker<Integer, PhotoImporter.ImportedPhoto> {
+
+    public static final String[] IMAGE_EXTENSIONS = {"jpg", "png", "gif", "jpeg"};
+
+    // Decoded photos waiting to be published are bounded by this many per thread
+    private final int DECODES_PER_THREAD = 2;
+
+    private List<File> selection;
+    private LightTable lightTable;
+    private PhotoAlbum photoAlbum;
+    private int numOfThreads;
+    private int total = 0;
+    private int imported = 0;
+    private int failed = 0;
+
+    /**
+     * Creates a new PhotoImporter for the given files and/or directories.
+     * Directories are searched recursively for image files.
+     *
+     * @param selection files and directories chosen by the user
+     * @param lightTable light table the decoded photos are added to
+     * @param photoAlbum application whose status bar shows the progress
+     */
+    public PhotoImporter(List<File> selection, LightTable lightTable, PhotoAlbum photoAlbum) {
+        this.selection = selection;
+        this.lightTable = lightTable;
+        this.photoAlbum = photoAlbum;
+        this.numOfThreads = Runtime.getRuntime().availableProcessors();
+    }
+
+    @Override
+    protected Integer doInBackground() throws Exception {
+        List<File> files = new ArrayList<File>();
+        for (File file : selection) {
+            collectImageFiles(file, files);
+        }
+        total = files.size();
+        if (total == 0) return 0;
+
+        ExecutorService decoders = Executors.newFixedThreadPool(numOfThreads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "PhotoImporter decoder");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.NORM_PRIORITY - 1);
+                return thread;
+            }
+        });
+        // Photos are published in the order they were selected, while up to
+        // DECODES_PER_THREAD * numOfThreads decodes run ahead in parallel.
+        Deque<Future<ImportedPhoto>> pending = new ArrayDeque<Future<ImportedPhoto>>();
+        int next = 0;
+        int done = 0;
+        try {
+            while (done < total && !isCancelled()) {
+                while (next < total && pending.size() < DECODES_PER_THREAD * numOfThreads) {
+                    pending.add(decoders.submit(new Decode(files.get(next++))));
+                }
+                try {
+                    ImportedPhoto photo = pending.remove().get();
+                    if (photo != null) publish(photo);
+                    else failed++;
+                } catch (ExecutionException ex) {
+                    failed++;
+                }
+                done++;
+                setProgress(done * 100 / total);
+            }
+        } finally {
+            decoders.shutdownNow();
+        }
+        return done;
+    }
+
+    @Override
+    protected void process(List<ImportedPhoto> photos) {
+        if (isCancelled()) return;
+        imported += photos.size();
+        lightTable.addImages(photos);
+        photoAlbum.updateStatusBar("Importing " + imported + " of " + total);
+    }
+
+    @Override
+    protected void done() {
+        String status;
+        if (isCancelled()) {
+            status = "Import cancelled, " + imported + " of " + total + " photos imported";
+        } else {
+            try {
+                get();
+                status = "Imported " + imported + " of " + total + " photos";
+            } catch (InterruptedException | ExecutionException ex) {
+                status = ex.getMessage(); // Put error message on status bar
+            }
+        }
+        if (failed > 0) status += " (" + failed + " could not be read)";
+        photoAlbum.importFinished(this, status);
+    }
+
+    /**
+     * Adds the given file to the list if it is an image, or every image found
+     * under it if it is a directory.
+     *
+     * @param file
+     * @param files list of image files found so far
+     */
+    private void collectImageFiles(File file, List<File> files) {
+        if (file.isDirectory()) {
+            File[] children = file.listFiles();
+            if (children == null) return;
+            Arrays.sort(children);
+            for (File child : children) {
+                if (isCancelled()) return;
+                collectImageFiles(child, files);
+            }
+        } else if (isImageFile(file)) {
+            files.add(file);
+        }
+    }
+
+    /**
+     * Check if a file has one of the supported image extensions.
+     *
+     * @return true if the file is an image, false otherwise
+     */
+    private boolean isImageFile(File file) {
+        String name = file.getName().toLowerCase();
+        for (String extension : IMAGE_EXTENSIONS) {
+            if (name.endsWith("." + extension)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Decodes a single file on a worker thread.
+     */
+    private class Decode implements Callable<ImportedPhoto> {
+
+        private File file;
+
+        public Decode(File file) {
+            this.file = file;
+        }
+
+        @Override
+        public ImportedPhoto call() throws IOException {
+            if (isCancelled()) return null;
+            ThumbnailCache cache = lightTable.getThumbnailCache();
+            // Cached thumbnails are only read once they are shown
+            ImportedPhoto photo = cache.getDimensions(file);
+            if (photo != null) return photo;
+            ThumbnailDecoder decoder = new ThumbnailDecoder(file);
+            BufferedImage thumbnail = decoder.decode(ThumbnailDecoder.THUMBNAIL_SIZE);
+            if (thumbnail == null) return null; // No registered reader for this file
+            photo = new ImportedPhoto(file, decoder.getWidth(), decoder.getHeight(), thumbnail);
+            cache.put(photo);
+            return photo;
+        }
+    }
+
+    /**
+     * A photo read by the importer, ready to be added to the LightTable.
+     */
+    public static class ImportedPhoto {
+
+        private File file;
+        private int width;
+        private int height;
+        private BufferedImage thumbnail;
+
+        public ImportedPhoto(File file, int width, int height, BufferedImage thumbnail) {
+            this.file = file;
+            this.width = width;
+            this.height = height;
+            this.thumbnail = thumbnail;
+        }
+
+        /**
+         * Get the file the photo was read from.
+         *
+         * @return file
+         */
+        public File getFile() {
+            return file;
+        }
+
+        /**
+         * Get the full-resolution width of the photo.
+         *
+         * @return width
+         */
+        public int getWidth() {
+            return width;
+        }
+
+        /**
+         * Get the full-resolution height of the photo.
+         *
+         * @return height
+         */
+        public int getHeight() {
+            return height;
+        }
+
+        /**
+         * Get the subsampled copy of the photo used for thumbnails.
+         *
+         * @return thumbnail, or null if it was found in the ThumbnailCache and
+         * hasn't been read
+         */
+        public BufferedImage getThumbnail() {
+            return thumbnail;
+        }
+    }
+}
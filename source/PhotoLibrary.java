@@ -0,0 +1,299 @@
+/**
+ * PhotoLibrary
+ * Keeps the album's photos in order and hands out their identifiers. It also
+ * keeps, for every tag, the set of identifiers of the photos with that tag,
+ * so photos can be looked up by their tags without going through all of
+ * them; tags are therefore changed through the library.
+ * CS 4470 - User Interface Software
+ * apl7@gatech.edu
+ *
+ * @author Alejandrina Patron Lopez
+ * @version 1.0
+ */
+
+import java.io.File;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+
+public class PhotoLibrary {
+
+    private List<Photo> photos = new ArrayList<Photo>();
+    private List<Photo> photosById = new ArrayList<Photo>(); // Null once removed
+    private PhotoIdSet ids = new PhotoIdSet(); // Photos still in the library
+    private List<BitSet> tagIndex = new ArrayList<BitSet>(); // Photo ids by TagRegistry id
+    private int nextId = 0;
+
+    /**
+     * Creates a new, empty PhotoLibrary.
+     */
+    public PhotoLibrary() {
+    }
+
+    /**
+     * Adds a photo to the end of the library.
+     *
+     * @param file file the photo is read from
+     * @param width full-resolution width of the photo
+     * @param height full-resolution height of the photo
+     * @return the new photo
+     */
+    public Photo add(File file, int width, int height) {
+        Photo photo = new Photo(nextId++, file, width, height);
+        photos.add(photo);
+        photosById.add(photo);
+        ids.add(photo.getId());
+        return photo;
+    }
+
+    /**
+     * Removes the photo at the given index.
+     *
+     * @param index
+     * @return the removed photo
+     */
+    public Photo remove(int index) {
+        Photo photo = photos.remove(index);
+        photosById.set(photo.getId(), null);
+        ids.remove(photo.getId());
+        for (BitSet tagged : tagIndex) {
+            tagged.clear(photo.getId());
+        }
+        return photo;
+    }
+
+    /**
+     * Get the photo at the given index.
+     *
+     * @param index
+     * @return photo
+     */
+    public Photo get(int index) {
+        return photos.get(index);
+    }
+
+    /**
+     * Get the number of photos in the library.
+     *
+     * @return size
+     */
+    public int size() {
+        return photos.size();
+    }
+
+    /**
+     * Get all photos, in order. The list can't be modified.
+     *
+     * @return photos
+     */
+    public List<Photo> getPhotos() {
+        return Collections.unmodifiableList(photos);
+    }
+
+    /**
+     * Get the photo with the given identifier.
+     *
+     * @param id
+     * @return photo, or null if it was removed
+     */
+    public Photo getById(int id) {
+        return photosById.get(id);
+    }
+
+    /**
+     * Get the identifiers of the photos in the library, whose order is the
+     * order of the photos.
+     *
+     * @return identifiers, which may be modified
+     */
+    public BitSet getIds() {
+        return ids.toBitSet();
+    }
+
+    /**
+     * Get the identifiers of the photos with a tag.
+     *
+     * @param tag
+     * @return identifiers, which may be modified
+     */
+    public BitSet getTaggedIds(Tag tag) {
+        return getTaggedIds(TagRegistry.getId(tag));
+    }
+
+    /**
+     * Get the identifiers of the photos with a tag.
+     *
+     * @param tagId id of the tag in the TagRegistry
+     * @return identifiers, which may be modified
+     */
+    public BitSet getTaggedIds(int tagId) {
+        return (BitSet)tagged(tagId).clone();
+    }
+
+    /**
+     * Get the set of identifiers of the photos with a tag, growing the index
+     * for tags registered since it was last grown.
+     */
+    private BitSet tagged(int tagId) {
+        while (tagIndex.size() <= tagId) {
+            tagIndex.add(new BitSet());
+        }
+        return tagIndex.get(tagId);
+    }
+
+    /**
+     * Get the index of a photo of the library.
+     *
+     * @param photo
+     * @return index, or -1 if the photo isn't in the library
+     */
+    public int indexOf(Photo photo) {
+        if (!ids.contains(photo.getId()) || photosById.get(photo.getId()) != photo) return -1;
+        return ids.rank(photo.getId());
+    }
+
+    /**
+     * Adds a tag to a photo of the library.
+     *
+     * @param photo
+     * @param tag
+     */
+    public void addTag(Photo photo, Tag tag) {
+        addTag(photo, TagRegistry.getId(tag));
+    }
+
+    /**
+     * Adds a tag to a photo of the library.
+     *
+     * @param photo
+     * @param tagId id of the tag in the TagRegistry
+     */
+    public void addTag(Photo photo, int tagId) {
+        if (photo.addTag(tagId)) tagged(tagId).set(photo.getId());
+    }
+
+    /**
+     * Removes a tag from a photo of the library.
+     *
+     * @param photo
+     * @param tag
+     */
+    public void removeTag(Photo photo, Tag tag) {
+        removeTag(photo, TagRegistry.getId(tag));
+    }
+
+    /**
+     * Removes a tag from a photo of the library.
+     *
+     * @param photo
+     * @param tagId id of the tag in the TagRegistry
+     */
+    public void removeTag(Photo photo, int tagId) {
+        if (photo.removeTag(tagId)) tagged(tagId).clear(photo.getId());
+    }
+
+    /**
+     * Adds a tag to many photos of the library at once.
+     *
+     * @param photoIds identifiers of the photos
+     * @param tag
+     * @return identifiers of the photos that didn't have the tag yet
+     */
+    public BitSet addTag(BitSet photoIds, Tag tag) {
+        return addTag(photoIds, TagRegistry.getId(tag));
+    }
+
+    /**
+     * Adds a tag to many photos of the library at once.
+     *
+     * @param photoIds identifiers of the photos
+     * @param tagId id of the tag in the TagRegistry
+     * @return identifiers of the photos that didn't have the tag yet
+     */
+    public BitSet addTag(BitSet photoIds, int tagId) {
+        BitSet tagged = tagged(tagId);
+        BitSet changed = (BitSet)photoIds.clone();
+        changed.and(ids.toBitSet()); // Removed photos can't be tagged
+        changed.andNot(tagged);
+        for (int id = changed.nextSetBit(0); id >= 0; id = changed.nextSetBit(id + 1)) {
+            photosById.get(id).addTag(tagId);
+        }
+        tagged.or(changed);
+        return changed;
+    }
+
+    /**
+     * Removes a tag from many photos of the library at once.
+     *
+     * @param photoIds identifiers of the photos
+     * @param tag
+     * @return identifiers of the photos that had the tag
+     */
+    public BitSet removeTag(BitSet photoIds, Tag tag) {
+        return removeTag(photoIds, TagRegistry.getId(tag));
+    }
+
+    /**
+     * Removes a tag from many photos of the library at once.
+     *
+     * @param photoIds identifiers of the photos
+     * @param tagId id of the tag in the TagRegistry
+     * @return identifiers of the photos that had the tag
+     */
+    public BitSet removeTag(BitSet photoIds, int tagId) {
+        BitSet tagged = tagged(tagId);
+        BitSet changed = (BitSet)photoIds.clone();
+        changed.and(tagged);
+        for (int id = changed.nextSetBit(0); id >= 0; id = changed.nextSetBit(id + 1)) {
+            photosById.get(id).removeTag(tagId);
+        }
+        tagged.andNot(changed);
+        return changed;
+    }
+
+    /**
+     * Get the identifiers of the photos with all of some tags and none of
+     * others, e.g. the photos tagged Travel and Family but not Work.
+     *
+     * @param with tags the photos must have; if empty, any photo matches
+     * @param without tags the photos must not have
+     * @return identifiers of the matching photos, which may be modified
+     */
+    public BitSet findIds(Collection<Tag> with, Collection<Tag> without) {
+        BitSet found;
+        if (with.isEmpty()) {
+            found = ids.toBitSet();
+        } else {
+            found = new BitSet();
+            boolean first = true;
+            for (Tag tag : with) {
+                if (first) found.or(tagged(TagRegistry.getId(tag)));
+                else found.and(tagged(TagRegistry.getId(tag)));
+                first = false;
+            }
+        }
+        for (Tag tag : without) {
+            found.andNot(tagged(TagRegistry.getId(tag)));
+        }
+        return found;
+    }
+
+    /**
+     * Get the photos with all of some tags and none of others, in order.
+     *
+     * @param with tags the photos must have; if empty, any photo matches
+     * @param without tags the photos must not have
+     * @return matching photos
+     */
+    public List<Photo> find(Collection<Tag> with, Collection<Tag> without) {
+        BitSet matching = findIds(with, without);
+        List<Photo> found = new ArrayList<Photo>(matching.cardinality());
+        // Photos are only ever added at the end, so ids are in library order
+        for (int id = matching.nextSetBit(0); id >= 0; id = matching.nextSetBit(id + 1)) {
+            found.add(photosById.get(id));
+        }
+        return found;
+    }
+}
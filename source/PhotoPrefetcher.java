@@ -0,0 +1,123 @@
+/**
+ * PhotoPrefetcher
+ * Decodes the photos around the current one in the background, so they are
+ * already in the PhotoStore when the user moves to them. More photos are
+ * prefetched in the direction the user is moving, and the faster they move,
+ * the further ahead the prefetcher reaches.
+ * CS 4470 - User Interface Software
+ * apl7@gatech.edu
+ *
+ * @author Alejandrina Patron Lopez
+ * @version 1.0
+ */
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+public class PhotoPrefetcher {
+
+    private final int MIN_AHEAD = 2;
+    private final int MAX_AHEAD = 6;
+    private final int BEHIND = 1;
+    // Navigating faster than this is considered flipping through the photos
+    private final long FAST_NAVIGATION_MS = 400;
+
+    private PhotoStore photoStore;
+    private int lastIndex = -1;
+    private long lastNavigationTime = 0;
+    private int ahead = MIN_AHEAD;
+    private Map<File, Future<BufferedImage>> pending = new HashMap<File, Future<BufferedImage>>();
+
+    /**
+     * Creates a new PhotoPrefetcher.
+     *
+     * @param photoStore store the prefetched photos are decoded into
+     */
+    public PhotoPrefetcher(PhotoStore photoStore) {
+        this.photoStore = photoStore;
+    }
+
+    /**
+     * Updates the prefetch window after the current photo changed. Decodes
+     * for photos that fell out of the window are cancelled if they haven't
+     * started yet.
+     *
+     * @param photos all photos, in navigation order
+     * @param index index of the current photo
+     */
+    public void currentPhotoChanged(List<Photo> photos, int index) {
+        if (index < 0 || index >= photos.size()) {
+            cancelAll();
+            lastIndex = -1;
+            return;
+        }
+        long now = System.currentTimeMillis();
+        int step = lastIndex < 0 ? 0 : index - lastIndex;
+        boolean fast = now - lastNavigationTime < FAST_NAVIGATION_MS;
+        // Reach further ahead while the user keeps flipping quickly
+        if (Math.abs(step) == 1 && fast) ahead = Math.min(MAX_AHEAD, ahead + 1);
+        else if (!fast) ahead = MIN_AHEAD;
+        int direction = step < 0 ? -1 : 1;
+        int behind = Math.abs(step) == 1 ? BEHIND : ahead;
+        lastIndex = index;
+        lastNavigationTime = now;
+
+        Map<File, Future<BufferedImage>> wanted = new HashMap<File, Future<BufferedImage>>();
+        long budget = photoStore.getBudget() / 2;
+        // The current photo stays in the window, so its decode isn't cancelled
+        long bytes = prefetch(photos, index, wanted, 0, budget);
+        // Nearest photos first, alternating between both sides of the window
+        for (int distance = 1; distance <= Math.max(ahead, behind); distance++) {
+            if (distance <= ahead) {
+                bytes = prefetch(photos, index + direction * distance, wanted, bytes, budget);
+            }
+            if (distance <= behind) {
+                bytes = prefetch(photos, index - direction * distance, wanted, bytes, budget);
+            }
+        }
+        cancelAll();
+        pending = wanted;
+    }
+
+    /**
+     * Requests a single photo, unless it is out of range or would exceed the
+     * byte budget of the window.
+     *
+     * @return bytes used by the window, including this photo
+     */
+    private long prefetch(List<Photo> photos, int index,
+            Map<File, Future<BufferedImage>> wanted, long bytes, long budget) {
+        if (index < 0 || index >= photos.size()) return bytes;
+        Photo photo = photos.get(index);
+        bytes += estimateSize(photo);
+        if (bytes > budget) return bytes;
+        File file = photo.getFile();
+        Future<BufferedImage> future = pending.remove(file);
+        if (future == null || future.isDone()) future = photoStore.load(file, null);
+        if (future != null) wanted.put(file, future);
+        return bytes;
+    }
+
+    /**
+     * Cancels all decodes that are still queued.
+     */
+    private void cancelAll() {
+        Iterator<Future<BufferedImage>> it = pending.values().iterator();
+        while (it.hasNext()) {
+            it.next().cancel(false);
+            it.remove();
+        }
+    }
+
+    /**
+     * Estimates the number of bytes a decoded photo occupies.
+     */
+    private long estimateSize(Photo photo) {
+        return 4L * photo.getWidth() * photo.getHeight();
+    }
+}
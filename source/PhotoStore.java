@@ -0,0 +1,236 @@
+/**
+ * PhotoStore
+ * Keeps full-resolution photos in memory within a fixed budget. The least
+ * recently used photos are evicted when the budget is exceeded, and are
+ * decoded again from disk the next time they are needed.
+ * CS 4470 - User Interface Software
+ * apl7@gatech.edu
+ *
+ * @author Alejandrina Patron Lopez
+ * @version 1.0
+ */
+
+import javax.imageio.ImageIO;
+import javax.swing.SwingUtilities;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+
+public class PhotoStore {
+
+    private long budget;
+    private long residentBytes = 0;
+    // Decoded photos in least to most recently used order
+    private LinkedHashMap<File, BufferedImage> resident =
+        new LinkedHashMap<File, BufferedImage>(16, 0.75f, true);
+    private Map<File, Future<BufferedImage>> loading = new HashMap<File, Future<BufferedImage>>();
+    private Map<File, List<Runnable>> callbacks = new HashMap<File, List<Runnable>>();
+    private ExecutorService decoders;
+
+    /**
+     * Creates a new PhotoStore. The budget, in megabytes, is read from the
+     * photoalbum.memoryMB system property, and defaults to a quarter of the
+     * maximum heap.
+     */
+    public PhotoStore() {
+        this(Long.getLong("photoalbum.memoryMB", Runtime.getRuntime().maxMemory() / (4 * 1024 * 1024))
+            * 1024 * 1024);
+    }
+
+    /**
+     * Creates a new PhotoStore.
+     *
+     * @param budget number of bytes decoded photos may occupy
+     */
+    public PhotoStore(long budget) {
+        this.budget = budget;
+        decoders = Executors.newFixedThreadPool(
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 2), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "PhotoStore decoder");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+    }
+
+    /**
+     * Sets the number of bytes decoded photos may occupy, evicting photos if
+     * the new budget is already exceeded.
+     *
+     * @param budget
+     */
+    public synchronized void setBudget(long budget) {
+        this.budget = budget;
+        evict();
+    }
+
+    /**
+     * Get the number of bytes decoded photos may occupy.
+     *
+     * @return budget
+     */
+    public synchronized long getBudget() {
+        return budget;
+    }
+
+    /**
+     * Get a photo if it is in memory, marking it as the most recently used.
+     *
+     * @param file
+     * @return photo, or null if it isn't in memory
+     */
+    public synchronized BufferedImage get(File file) {
+        return resident.get(file);
+    }
+
+    /**
+     * Check if a photo is in memory, without affecting eviction order.
+     *
+     * @param file
+     * @return true if the photo is in memory
+     */
+    public synchronized boolean isResident(File file) {
+        return resident.containsKey(file);
+    }
+
+    /**
+     * Decodes a photo in the background, unless it is already in memory or
+     * being decoded.
+     *
+     * @param file photo to be decoded
+     * @param whenLoaded run on the Event Dispatch Thread once the photo is in
+     * memory, may be null
+     * @return pending decode, or null if the photo is already in memory
+     */
+    public synchronized Future<BufferedImage> load(final File file, Runnable whenLoaded) {
+        if (resident.containsKey(file)) return null;
+        if (whenLoaded != null) {
+            List<Runnable> waiting = callbacks.get(file);
+            if (waiting == null) {
+                waiting = new ArrayList<Runnable>();
+                callbacks.put(file, waiting);
+            }
+            if (!waiting.contains(whenLoaded)) waiting.add(whenLoaded);
+        }
+        Future<BufferedImage> pending = loading.get(file);
+        if (pending != null && !pending.isCancelled()) return pending;
+        final FutureTask<BufferedImage> task = new FutureTask<BufferedImage>(new Callable<BufferedImage>() {
+            @Override
+            public BufferedImage call() throws IOException {
+                return ImageIO.read(file);
+            }
+        }) {
+            @Override
+            protected void done() {
+                // Also runs when the decode is cancelled before it starts, so
+                // nothing is left waiting on a decode that will never happen
+                BufferedImage img = null;
+                if (!isCancelled()) {
+                    try {
+                        img = get();
+                    } catch (InterruptedException | ExecutionException ex) {
+                        // Decoding failed, so there is no photo to store
+                    }
+                }
+                finished(file, this, img);
+            }
+        };
+        loading.put(file, task);
+        decoders.execute(task);
+        return task;
+    }
+
+    /**
+     * Removes a photo from memory, e.g. when it is deleted.
+     *
+     * @param file
+     */
+    public synchronized void remove(File file) {
+        callbacks.remove(file);
+        // A decode still running is ignored once it finishes
+        Future<BufferedImage> pending = loading.remove(file);
+        if (pending != null) pending.cancel(false);
+        BufferedImage img = resident.remove(file);
+        if (img != null) residentBytes -= sizeOf(img);
+    }
+
+    /**
+     * Get the number of bytes currently occupied by decoded photos.
+     *
+     * @return resident bytes
+     */
+    public synchronized long getResidentBytes() {
+        return residentBytes;
+    }
+
+    /**
+     * Stores a decoded photo as the most recently used one.
+     *
+     * @param file
+     * @param img
+     */
+    private synchronized void put(File file, BufferedImage img) {
+        BufferedImage previous = resident.put(file, img);
+        if (previous != null) residentBytes -= sizeOf(previous);
+        residentBytes += sizeOf(img);
+        evict();
+    }
+
+    /**
+     * Stores a decoded photo and notifies everyone waiting for it.
+     *
+     * @param file
+     * @param task decode that finished
+     * @param img decoded photo, or null if decoding failed or was cancelled
+     */
+    private synchronized void finished(File file, Future<BufferedImage> task, BufferedImage img) {
+        // A decode of a removed photo, or one cancelled and replaced by a
+        // new decode, is no longer wanted
+        if (loading.get(file) != task) return;
+        loading.remove(file);
+        if (img != null) put(file, img);
+        List<Runnable> waiting = callbacks.remove(file);
+        if (waiting != null) {
+            for (Runnable whenLoaded : waiting) {
+                SwingUtilities.invokeLater(whenLoaded);
+            }
+        }
+    }
+
+    /**
+     * Evicts least recently used photos until the budget is met. The most
+     * recently used photo is always kept, even if it exceeds the budget.
+     */
+    private void evict() {
+        Iterator<Map.Entry<File, BufferedImage>> it = resident.entrySet().iterator();
+        while (residentBytes > budget && resident.size() > 1 && it.hasNext()) {
+            residentBytes -= sizeOf(it.next().getValue());
+            it.remove();
+        }
+    }
+
+    /**
+     * Estimates the number of bytes used by a photo's pixels.
+     */
+    private static long sizeOf(BufferedImage img) {
+        DataBuffer buffer = img.getRaster().getDataBuffer();
+        long bytesPerElement = DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+        return (long)buffer.getSize() * buffer.getNumBanks() * bytesPerElement;
+    }
+}
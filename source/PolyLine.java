@@ -9,14 +9,29 @@
 
 import java.awt.Graphics2D;
 import java.awt.Color;
-import java.util.*;
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.List;
 import java.awt.BasicStroke;
 
 public class PolyLine implements Annotation {
-    private ArrayList<Integer> xList;
-    private ArrayList<Integer> yList;
-    private ArrayList<Integer> prevXList;
-    private ArrayList<Integer> prevYList;
+
+    // Shared by all lines; round joins keep the segments from showing
+    private static final BasicStroke STROKE = new BasicStroke(3,
+        BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+    // Java2D strokes long paths much slower than short ones, so lines are
+    // split into paths of at most this many segments
+    private final int SEGMENTS_PER_PATH = 64;
+
+    // Points stored as x0, y0, x1, y1, ...
+    private int[] coords;
+    private int size = 0;
+    private int translateX, translateY; // Offset while being dragged
+    private int minX, minY, maxX, maxY;
+    private List<Path2D.Float> paths; // Built from coords, null when out of date
     private Color inkColor;
     private boolean selected = false;
 
@@ -24,8 +39,7 @@ public class PolyLine implements Annotation {
      * Creates a new PolyLine object.
      */
     public PolyLine() {
-        xList = new ArrayList<Integer>();
-        yList = new ArrayList<Integer>();
+        coords = new int[32];
     }
 
     /**
@@ -35,26 +49,158 @@ public class PolyLine implements Annotation {
      * @param y
      */
     public void addPoint(int x, int y) {
-        xList.add(x);
-        yList.add(y);
+        x -= translateX;
+        y -= translateY;
+        if (2 * size + 2 > coords.length) coords = Arrays.copyOf(coords, 2 * coords.length);
+        coords[2 * size] = x;
+        coords[2 * size + 1] = y;
+        size++;
+        includeInBounds(x, y);
+        if (paths != null) appendToPaths(size - 1);
     }
 
     /**
-     * Get list of x coordinates.
+     * Moves the line's last point, e.g. when a stroke continues in a
+     * straight line.
      *
-     * @return x coordinates
+     * @param x
+     * @param y
      */
-    public ArrayList<Integer> getXList() {
-        return xList;
+    public void setLastPoint(int x, int y) {
+        if (size == 0) {
+            addPoint(x, y);
+            return;
+        }
+        x -= translateX;
+        y -= translateY;
+        coords[2 * size - 2] = x;
+        coords[2 * size - 1] = y;
+        // The bounds may now be a little larger than needed, until the line
+        // is simplified
+        includeInBounds(x, y);
+        if (paths != null) rebuildLastPath();
+    }
+
+    /**
+     * Removes the points that are within a tolerance of the line through
+     * the remaining ones, using the Ramer-Douglas-Peucker algorithm.
+     *
+     * @param tolerance distance removed points may be from the line
+     * @return number of points removed
+     */
+    public int simplify(double tolerance) {
+        if (size < 3) return 0;
+        boolean[] keep = new boolean[size];
+        keep[0] = true;
+        keep[size - 1] = true;
+        // Ranges of points still to simplify, as first, last, first, ...
+        int[] ranges = new int[64];
+        int pending = 0;
+        ranges[pending++] = 0;
+        ranges[pending++] = size - 1;
+        while (pending > 0) {
+            int last = ranges[--pending];
+            int first = ranges[--pending];
+            double x0 = coords[2 * first];
+            double y0 = coords[2 * first + 1];
+            double dx = coords[2 * last] - x0;
+            double dy = coords[2 * last + 1] - y0;
+            double lengthSq = dx * dx + dy * dy;
+            int farthest = -1;
+            double maxDistance = tolerance;
+            for (int i = first + 1; i < last; i++) {
+                double px = coords[2 * i] - x0;
+                double py = coords[2 * i + 1] - y0;
+                // Distance to the segment, not the whole line, since strokes
+                // can double back
+                double t = lengthSq == 0 ? 0 : Math.max(0, Math.min(1, (px * dx + py * dy) / lengthSq));
+                double distance = Math.hypot(px - t * dx, py - t * dy);
+                if (distance > maxDistance) {
+                    maxDistance = distance;
+                    farthest = i;
+                }
+            }
+            if (farthest < 0) continue;
+            keep[farthest] = true;
+            if (pending + 4 > ranges.length) ranges = Arrays.copyOf(ranges, 2 * ranges.length);
+            ranges[pending++] = first;
+            ranges[pending++] = farthest;
+            ranges[pending++] = farthest;
+            ranges[pending++] = last;
+        }
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (!keep[i]) continue;
+            coords[2 * kept] = coords[2 * i];
+            coords[2 * kept + 1] = coords[2 * i + 1];
+            kept++;
+        }
+        int removed = size - kept;
+        size = kept;
+        minX = maxX = coords[0];
+        minY = maxY = coords[1];
+        for (int i = 1; i < size; i++) {
+            minX = Math.min(minX, coords[2 * i]);
+            minY = Math.min(minY, coords[2 * i + 1]);
+            maxX = Math.max(maxX, coords[2 * i]);
+            maxY = Math.max(maxY, coords[2 * i + 1]);
+        }
+        if (removed > 0) paths = null;
+        return removed;
     }
 
     /**
-     * Get list of y coordinates.
+     * Get number of points in the line.
      *
-     * @return y coordinates
+     * @return number of points
      */
-    public ArrayList<Integer> getYList() {
-        return yList;
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get a point's x coordinate.
+     *
+     * @param i index of the point
+     * @return x coordinate
+     */
+    public int getX(int i) {
+        return coords[2 * i] + translateX;
+    }
+
+    /**
+     * Get a point's y coordinate.
+     *
+     * @param i index of the point
+     * @return y coordinate
+     */
+    public int getY(int i) {
+        return coords[2 * i + 1] + translateY;
+    }
+
+    /**
+     * Get the smallest rectangle containing all points of the line.
+     *
+     * @return bounds, or an empty rectangle if the line has no points
+     */
+    public Rectangle getBounds() {
+        if (size == 0) return new Rectangle();
+        return new Rectangle(minX + translateX, minY + translateY, maxX - minX, maxY - minY);
+    }
+
+    /**
+     * Grows the bounds to include the given point.
+     */
+    private void includeInBounds(int x, int y) {
+        if (size == 1) {
+            minX = maxX = x;
+            minY = maxY = y;
+        } else {
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            maxX = Math.max(maxX, x);
+            maxY = Math.max(maxY, y);
+        }
     }
 
     /**
@@ -85,49 +231,114 @@ public class PolyLine implements Annotation {
     }
 
     @Override
-    public void savePrevCoordinates() {
-        this.prevXList = this.xList;
-        this.prevYList = this.yList;
+    public void setTranslation(int dx, int dy) {
+        translateX = dx;
+        translateY = dy;
+    }
+
+    @Override
+    public void commitTranslation() {
+        if (translateX == 0 && translateY == 0) return;
+        for (int i = 0; i < 2 * size; i += 2) {
+            coords[i] += translateX;
+            coords[i + 1] += translateY;
+        }
+        minX += translateX;
+        maxX += translateX;
+        minY += translateY;
+        maxY += translateY;
+        if (paths != null) {
+            AffineTransform move = AffineTransform.getTranslateInstance(translateX, translateY);
+            for (Path2D.Float path : paths) {
+                path.transform(move);
+            }
+        }
+        translateX = 0;
+        translateY = 0;
     }
 
     /**
-     * Get line's previous x coordinates.
+     * Get the paths the line is drawn with, building them if the points
+     * changed.
      *
-     * @return prevXList
+     * @return paths through all points, in order
      */
-    public ArrayList<Integer> getPrevX() {
-        return prevXList;
+    private List<Path2D.Float> getPaths() {
+        if (paths == null) {
+            paths = new ArrayList<Path2D.Float>(size / SEGMENTS_PER_PATH + 1);
+            for (int i = 1; i < size; i++) {
+                appendToPaths(i);
+            }
+        }
+        return paths;
     }
 
     /**
-     * Get line's previous y coordinates.
-     *
-     * @return prevYList
+     * Builds the last path again after the last point moved.
      */
-    public ArrayList<Integer> getPrevY() {
-        return prevYList;
+    private void rebuildLastPath() {
+        int first = 1;
+        if (!paths.isEmpty()) {
+            paths.remove(paths.size() - 1);
+            first = paths.size() * SEGMENTS_PER_PATH + 1;
+        }
+        for (int i = first; i < size; i++) {
+            appendToPaths(i);
+        }
     }
 
     /**
-     * Set line's new x and y coordinates.
+     * Adds the segment ending at the given point to the last path, starting
+     * a new path when the last one is full.
      *
-     * @param xList
-     * @param yList
+     * @param i index of the point, at least 1
      */
-    public void setCoordinates(ArrayList<Integer> xList, ArrayList<Integer> yList) {
-        this.xList = xList;
-        this.yList = yList;
+    private void appendToPaths(int i) {
+        if (i < 1) return;
+        if ((i - 1) % SEGMENTS_PER_PATH == 0) {
+            Path2D.Float path = new Path2D.Float(Path2D.WIND_NON_ZERO, SEGMENTS_PER_PATH + 1);
+            path.moveTo(coords[2 * i - 2], coords[2 * i - 1]);
+            paths.add(path);
+        }
+        paths.get(paths.size() - 1).lineTo(coords[2 * i], coords[2 * i + 1]);
     }
 
     @Override
     public void draw(Graphics2D g2, int xOffset, int yOffset) {
-        for (int i = 0; i < xList.size() - 1; ++i) {
-            g2.setColor(inkColor);
-            g2.setStroke(new BasicStroke(3));
-            g2.drawLine((int)xList.get(i) + xOffset,
-                (int)yList.get(i) + yOffset, (int)xList.get(i + 1) + xOffset,
-                (int)yList.get(i + 1) + yOffset);
+        if (size < 2) return;
+        g2.setColor(inkColor);
+        g2.setStroke(STROKE);
+        xOffset += translateX;
+        yOffset += translateY;
+        g2.translate(xOffset, yOffset);
+        for (Path2D.Float path : getPaths()) {
+            Rectangle bounds = path.getBounds();
+            // Paths outside of the area being repainted are skipped
+            if (g2.hitClip(bounds.x - 2, bounds.y - 2, bounds.width + 4, bounds.height + 4)) {
+                g2.draw(path);
+            }
         }
+        g2.translate(-xOffset, -yOffset);
+        g2.setColor(Color.BLACK);
+    }
+
+    /**
+     * Draws only the segment ending at the line's last point, e.g. right
+     * after the point was added.
+     *
+     * @param g2 Graphics context
+     * @param xOffset
+     * @param yOffset
+     */
+    public void drawLastSegment(Graphics2D g2, int xOffset, int yOffset) {
+        if (size < 2) return;
+        int i = 2 * size - 4;
+        xOffset += translateX;
+        yOffset += translateY;
+        g2.setColor(inkColor);
+        g2.setStroke(STROKE);
+        g2.drawLine(coords[i] + xOffset, coords[i + 1] + yOffset,
+            coords[i + 2] + xOffset, coords[i + 3] + yOffset);
         g2.setColor(Color.BLACK);
     }
 }
@@ -9,13 +9,14 @@
 
 import java.awt.Graphics2D;
 import java.awt.Color;
+import java.awt.Dimension;
 import java.awt.FontMetrics;
 import java.util.ArrayList;
 
 public class PostIt implements Annotation {
 
     private int x, y;
-    private int prevX, prevY;
+    private int translateX, translateY; // Offset while being dragged
     private int width, height;
     private ArrayList<String> text;
     private boolean selected = false;
@@ -63,7 +64,7 @@ public class PostIt implements Annotation {
      * @return x coordinate
      */
     public int getX() {
-        return x;
+        return x + translateX;
     }
 
     /**
@@ -72,7 +73,7 @@ public class PostIt implements Annotation {
      * @return y coordinate
      */
     public int getY() {
-        return y;
+        return y + translateY;
     }
 
     /**
@@ -157,37 +158,41 @@ public class PostIt implements Annotation {
     }
 
     @Override
-    public void savePrevCoordinates() {
-        this.prevX = x;
-        this.prevY = y;
+    public void setTranslation(int dx, int dy) {
+        translateX = dx;
+        translateY = dy;
     }
 
-    /**
-     * Get post-it's previous y coordinate.
-     *
-     * @return prevY
-     */
-    public int getPrevX() {
-        return prevX;
-    }
-
-    /**
-     * Get post-it's previous y coordinate.
-     *
-     * @return prevY
-     */
-    public int getPrevY() {
-        return prevY;
+    @Override
+    public void commitTranslation() {
+        x += translateX;
+        y += translateY;
+        translateX = 0;
+        translateY = 0;
     }
 
     @Override
     public void draw(Graphics2D g2, int xOffset, int yOffset) {
+        xOffset += translateX;
+        yOffset += translateY;
         g2.setColor(inkColor);
         g2.fillRect(x + xOffset, y + yOffset, width, height);
         g2.setColor(Color.black);
         drawText(g2, xOffset, yOffset);
     }
 
+    /**
+     * Grows the PostIt until its text fits. Drawing doesn't grow the PostIt,
+     * so this must be called whenever the text changes.
+     *
+     * @param fm metrics of the font the text is drawn with
+     */
+    public void fitText(FontMetrics fm) {
+        Dimension size = layoutText(fm, null, 0, 0);
+        width = size.width;
+        height = size.height;
+    }
+
     /**
      * Draws text on the PostIt.
      *
@@ -196,7 +201,21 @@ public class PostIt implements Annotation {
      * @param yOffset
      */
     private void drawText(Graphics2D g2, int xOffset, int yOffset) {
-        FontMetrics fm = g2.getFontMetrics();
+        layoutText(g2.getFontMetrics(), g2, xOffset, yOffset);
+    }
+
+    /**
+     * Lays the text out on the PostIt, wrapping it to the PostIt's width.
+     *
+     * @param fm metrics of the font the text is drawn with
+     * @param g2 Graphics context the text is drawn on, or null to only measure it
+     * @param xOffset
+     * @param yOffset
+     * @return size the PostIt needs for its text to fit
+     */
+    private Dimension layoutText(FontMetrics fm, Graphics2D g2, int xOffset, int yOffset) {
+        int width = this.width;
+        int height = this.height;
         int xBase = 5;
         int yBase = 15;
         int currX;
@@ -221,7 +240,8 @@ public class PostIt implements Annotation {
                 height += sHeight;
             }
             xBase += sWidth;
-            g2.drawString(s, currX, currY);
+            if (g2 != null) g2.drawString(s, currX, currY);
         }
+        return new Dimension(width, height);
     }
 }
@@ -0,0 +1,132 @@
+/**
+ * StrokeSimplifier
+ * Drops the redundant points of a stroke while it is drawn. A point closer
+ * than the tolerance to the last one is dropped, and a point that continues
+ * the last segment in a straight line, within the tolerance, moves the end
+ * of that segment instead of adding a new one. To keep the error bounded,
+ * the directions the segment can take are narrowed down with every point it
+ * absorbs. When the stroke is finished, the line is simplified once more
+ * with the Ramer-Douglas-Peucker algorithm. Each stage uses half of the
+ * tolerance, so no point drawn ends up farther than the tolerance from the
+ * line kept.
+ * CS 4470 - User Interface Software
+ * apl7@gatech.edu
+ *
+ * @author Alejandrina Patron Lopez
+ * @version 1.0
+ */
+
+public class StrokeSimplifier {
+
+    private double tolerance;
+    private PolyLine line; // Line being simplified
+    // Directions, relative to coneDirection, the line's last segment can
+    // take while keeping the points it absorbed within the tolerance
+    private double coneDirection, coneMin, coneMax;
+
+    /**
+     * Creates a new StrokeSimplifier.
+     *
+     * @param tolerance distance points dropped are allowed to be from the line
+     */
+    public StrokeSimplifier(double tolerance) {
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Sets the distance points dropped are allowed to be from the line.
+     *
+     * @param tolerance
+     */
+    public void setTolerance(double tolerance) {
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Get the distance points dropped are allowed to be from the line.
+     *
+     * @return tolerance
+     */
+    public double getTolerance() {
+        return tolerance;
+    }
+
+    /**
+     * Adds the next point of a stroke to its line, unless it is redundant.
+     *
+     * @param line line of the stroke
+     * @param x
+     * @param y
+     * @return true if the line's last segment changed, either because the
+     * point was added or because the last point moved to it
+     */
+    public boolean addPoint(PolyLine line, int x, int y) {
+        int size = line.size();
+        if (line != this.line) {
+            this.line = line;
+            // Nothing is known about the points already in the line
+            coneMin = 1;
+            coneMax = -1;
+        }
+        if (size == 0 || tolerance <= 0) {
+            line.addPoint(x, y);
+            return true;
+        }
+        double halfTolerance = tolerance / 2;
+        int lastX = line.getX(size - 1);
+        int lastY = line.getY(size - 1);
+        double step = Math.hypot(x - lastX, y - lastY);
+        if (size >= 2) {
+            int anchorX = line.getX(size - 2);
+            int anchorY = line.getY(size - 2);
+            double distance = Math.hypot(x - anchorX, y - anchorY);
+            double direction = Math.IEEEremainder(
+                Math.atan2(y - anchorY, x - anchorX) - coneDirection, 2 * Math.PI);
+            if (step < halfTolerance) {
+                // Dropped, but the segment still has to pass near it
+                if (distance > 0) narrowCone(direction, distance);
+                return false;
+            }
+            // Only moves forward along the segment, so the points it absorbs
+            // stay between its ends
+            if (direction >= coneMin && direction <= coneMax
+                    && distance >= Math.hypot(lastX - anchorX, lastY - anchorY)) {
+                line.setLastPoint(x, y);
+                narrowCone(direction, distance);
+                return true;
+            }
+        } else if (step < halfTolerance) {
+            return false;
+        }
+        line.addPoint(x, y);
+        coneDirection = Math.atan2(y - lastY, x - lastX);
+        coneMin = -Math.PI;
+        coneMax = Math.PI;
+        narrowCone(0, step);
+        return true;
+    }
+
+    /**
+     * Simplifies a finished stroke's line once more.
+     *
+     * @param line
+     * @return number of points removed
+     */
+    public int finish(PolyLine line) {
+        if (line == this.line) this.line = null;
+        return tolerance > 0 ? line.simplify(tolerance / 2) : 0;
+    }
+
+    /**
+     * Narrows the directions the last segment can take to those passing
+     * within the tolerance of a point.
+     *
+     * @param direction direction of the point from the start of the segment
+     * @param distance distance of the point from the start of the segment
+     */
+    private void narrowCone(double direction, double distance) {
+        double spread = Math.asin(Math.min(1, tolerance / 2 / distance));
+        coneMin = Math.max(coneMin, direction - spread);
+        coneMax = Math.min(coneMax, direction + spread);
+    }
+}
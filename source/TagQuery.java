@@ -0,0 +1,97 @@
+/**
+ * TagQuery
+ * Selects the photos with all of some tags and none of others, e.g. the
+ * photos tagged Travel and Family but not Work. A query with no tags
+ * selects every photo.
+ * CS 4470 - User Interface Software
+ * apl7@gatech.edu
+ *
+ * @author Alejandrina Patron Lopez
+ * @version 1.0
+ */
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+public class TagQuery {
+
+    private Set<Tag> required = EnumSet.noneOf(Tag.class);
+    private Set<Tag> excluded = EnumSet.noneOf(Tag.class);
+
+    /**
+     * Creates a query selecting every photo.
+     */
+    public TagQuery() {
+    }
+
+    /**
+     * Creates a new TagQuery.
+     *
+     * @param required tags the photos must have
+     * @param excluded tags the photos must not have
+     */
+    public TagQuery(Collection<Tag> required, Collection<Tag> excluded) {
+        this.required.addAll(required);
+        this.excluded.addAll(excluded);
+    }
+
+    /**
+     * Check if a photo is selected by the query.
+     *
+     * @param photo
+     * @return true if it has all required tags and no excluded one
+     */
+    public boolean matches(Photo photo) {
+        for (Tag tag : required) {
+            if (!photo.hasTag(tag)) return false;
+        }
+        for (Tag tag : excluded) {
+            if (photo.hasTag(tag)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Check if the query selects every photo.
+     *
+     * @return true if it has no tags
+     */
+    public boolean isEmpty() {
+        return required.isEmpty() && excluded.isEmpty();
+    }
+
+    /**
+     * Get the tags the photos must have.
+     *
+     * @return required tags
+     */
+    public Set<Tag> getRequired() {
+        return Collections.unmodifiableSet(required);
+    }
+
+    /**
+     * Get the tags the photos must not have.
+     *
+     * @return excluded tags
+     */
+    public Set<Tag> getExcluded() {
+        return Collections.unmodifiableSet(excluded);
+    }
+
+    @Override
+    public String toString() {
+        if (isEmpty()) return "All photos";
+        StringBuilder text = new StringBuilder();
+        for (Tag tag : required) {
+            if (text.length() > 0) text.append(", ");
+            text.append(tag.getTagName());
+        }
+        for (Tag tag : excluded) {
+            if (text.length() > 0) text.append(", ");
+            text.append("not ").append(tag.getTagName());
+        }
+        return text.toString();
+    }
+}
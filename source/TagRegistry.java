@@ -0,0 +1,86 @@
+/**
+ * TagRegistry
+ * Hands out the small numbers tags are kept by in photos' tag bit sets and
+ * the PhotoLibrary's tag index. The built-in Tags are registered first, so
+ * each one's id is its ordinal; tags the user defines get the ids after
+ * them.
+ * CS 4470 - User Interface Software
+ * apl7@gatech.edu
+ *
+ * @author Alejandrina Patron Lopez
+ * @version 1.0
+ */
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class TagRegistry {
+
+    private static List<String> names = new ArrayList<String>();
+    private static Map<String, Integer> ids = new HashMap<String, Integer>();
+
+    static {
+        for (Tag tag : Tag.values()) {
+            register(tag.getTagName());
+        }
+    }
+
+    private TagRegistry() {
+    }
+
+    /**
+     * Registers a tag, unless a tag with that name already exists.
+     *
+     * @param name
+     * @return id of the tag
+     */
+    public static synchronized int register(String name) {
+        Integer id = ids.get(name);
+        if (id != null) return id;
+        names.add(name);
+        ids.put(name, names.size() - 1);
+        return names.size() - 1;
+    }
+
+    /**
+     * Get the id of a built-in tag.
+     *
+     * @param tag
+     * @return id
+     */
+    public static int getId(Tag tag) {
+        return tag.ordinal();
+    }
+
+    /**
+     * Get the id of the tag with the given name.
+     *
+     * @param name
+     * @return id, or -1 if no such tag is registered
+     */
+    public static synchronized int getId(String name) {
+        Integer id = ids.get(name);
+        return id != null ? id : -1;
+    }
+
+    /**
+     * Get the name of a tag.
+     *
+     * @param id
+     * @return name
+     */
+    public static synchronized String getName(int id) {
+        return names.get(id);
+    }
+
+    /**
+     * Get the number of tags registered.
+     *
+     * @return number of tags
+     */
+    public static synchronized int size() {
+        return names.size();
+    }
+}
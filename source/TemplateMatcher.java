@@ -0,0 +1,240 @@
+/**
+ * TemplateMatcher
+ * Recognizes gestures by comparing their shape with template strokes, in the
+ * manner of the $1 recognizer: a stroke is resampled to a fixed number of
+ * points, rotated, scaled and moved to the origin, and then compared point
+ * by point with every template. Rotation is only normalized to the nearest
+ * of eight base orientations, so "<", ">", "^" and "v" stay distinct.
+ * CS 4470 - User Interface Software
+ * apl7@gatech.edu
+ *
+ * @author Alejandrina Patron Lopez
+ * @version 1.0
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class TemplateMatcher {
+
+    private final int NUM_POINTS = 64;
+    private final float SIZE = 250f;
+    private final float HALF_DIAGONAL = (float)(0.5 * Math.sqrt(2 * SIZE * SIZE));
+    private final float ANGLE_RANGE = (float)Math.toRadians(22.5);
+    private final float ANGLE_PRECISION = (float)Math.toRadians(2);
+    private final float PHI = (float)(0.5 * (Math.sqrt(5) - 1));
+
+    private List<float[]> templates = new ArrayList<float[]>();
+    // Preallocated buffer for the stroke being recognized, as x0, y0, x1, ...
+    private float[] candidate = new float[2 * NUM_POINTS];
+    private int match = -1;
+    private float confidence = 0;
+
+    /**
+     * Adds a template.
+     *
+     * @param points template stroke as x0, y0, x1, y1, ...
+     * @return index of the template
+     */
+    public int addTemplate(int[] points) {
+        float[] template = new float[2 * NUM_POINTS];
+        if (!normalize(points, points.length / 2, template)) {
+            throw new IllegalArgumentException("Template is a single point");
+        }
+        templates.add(template);
+        return templates.size() - 1;
+    }
+
+    /**
+     * Finds the template closest to a stroke.
+     *
+     * @param points stroke as x0, y0, x1, y1, ...
+     * @param size number of points in the stroke
+     * @return true if any template could be compared with the stroke
+     */
+    public boolean recognize(int[] points, int size) {
+        match = -1;
+        confidence = 0;
+        if (!normalize(points, size, candidate)) return false;
+        float best = Float.POSITIVE_INFINITY;
+        for (int t = 0; t < templates.size(); t++) {
+            float distance = distanceAtBestAngle(templates.get(t), best);
+            if (distance < best) {
+                best = distance;
+                match = t;
+            }
+        }
+        if (best == Float.POSITIVE_INFINITY) return false;
+        confidence = Math.max(0, 1 - best / HALF_DIAGONAL);
+        return true;
+    }
+
+    /**
+     * Get the template matched by the last stroke recognized.
+     *
+     * @return index of the template, or -1 if there was none
+     */
+    public int getMatch() {
+        return match;
+    }
+
+    /**
+     * Get how close the last stroke recognized was to its template.
+     *
+     * @return confidence, from 0 to 1
+     */
+    public float getConfidence() {
+        return confidence;
+    }
+
+    /**
+     * Resamples a stroke to NUM_POINTS evenly spaced points, and rotates,
+     * scales and translates them so strokes can be compared.
+     *
+     * @return false if the stroke has no length
+     */
+    private boolean normalize(int[] points, int size, float[] out) {
+        float length = 0;
+        for (int i = 1; i < size; i++) {
+            length += distance(points[2 * i - 2], points[2 * i - 1], points[2 * i], points[2 * i + 1]);
+        }
+        if (size < 2 || length == 0) return false;
+
+        // Resample
+        float interval = length / (NUM_POINTS - 1);
+        float walked = 0;
+        float prevX = points[0];
+        float prevY = points[1];
+        out[0] = prevX;
+        out[1] = prevY;
+        int count = 1;
+        for (int i = 1; i < size && count < NUM_POINTS; i++) {
+            float x = points[2 * i];
+            float y = points[2 * i + 1];
+            float d = distance(prevX, prevY, x, y);
+            while (walked + d >= interval && count < NUM_POINTS && d > 0) {
+                float t = (interval - walked) / d;
+                prevX += t * (x - prevX);
+                prevY += t * (y - prevY);
+                out[2 * count] = prevX;
+                out[2 * count + 1] = prevY;
+                count++;
+                d = distance(prevX, prevY, x, y);
+                walked = 0;
+            }
+            walked += d;
+            prevX = x;
+            prevY = y;
+        }
+        for (; count < NUM_POINTS; count++) { // Rounding can leave the last one out
+            out[2 * count] = points[2 * size - 2];
+            out[2 * count + 1] = points[2 * size - 1];
+        }
+
+        // Rotate the indicative angle, from the centroid to the first point,
+        // to the nearest base orientation
+        float centroidX = 0, centroidY = 0;
+        for (int i = 0; i < NUM_POINTS; i++) {
+            centroidX += out[2 * i];
+            centroidY += out[2 * i + 1];
+        }
+        centroidX /= NUM_POINTS;
+        centroidY /= NUM_POINTS;
+        double indicative = Math.atan2(out[1] - centroidY, out[0] - centroidX);
+        double base = Math.PI / 4 * Math.round(indicative / (Math.PI / 4));
+        float cos = (float)Math.cos(base - indicative);
+        float sin = (float)Math.sin(base - indicative);
+        float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < NUM_POINTS; i++) {
+            float x = out[2 * i] - centroidX;
+            float y = out[2 * i + 1] - centroidY;
+            out[2 * i] = x * cos - y * sin;
+            out[2 * i + 1] = x * sin + y * cos;
+            minX = Math.min(minX, out[2 * i]);
+            minY = Math.min(minY, out[2 * i + 1]);
+            maxX = Math.max(maxX, out[2 * i]);
+            maxY = Math.max(maxY, out[2 * i + 1]);
+        }
+
+        // Scale uniformly, so straight strokes aren't stretched, and move the
+        // centroid to the origin
+        float scale = SIZE / Math.max(maxX - minX, maxY - minY);
+        centroidX = 0;
+        centroidY = 0;
+        for (int i = 0; i < NUM_POINTS; i++) {
+            out[2 * i] *= scale;
+            out[2 * i + 1] *= scale;
+            centroidX += out[2 * i];
+            centroidY += out[2 * i + 1];
+        }
+        centroidX /= NUM_POINTS;
+        centroidY /= NUM_POINTS;
+        for (int i = 0; i < NUM_POINTS; i++) {
+            out[2 * i] -= centroidX;
+            out[2 * i + 1] -= centroidY;
+        }
+        return true;
+    }
+
+    /**
+     * Searches the rotation of the candidate that brings it closest to a
+     * template, using golden section search.
+     *
+     * @param best distance of the best template so far; templates that can't
+     * beat it are abandoned early
+     * @return distance at the best rotation, or infinity if abandoned
+     */
+    private float distanceAtBestAngle(float[] template, float best) {
+        float a = -ANGLE_RANGE;
+        float b = ANGLE_RANGE;
+        float x1 = PHI * a + (1 - PHI) * b;
+        float x2 = (1 - PHI) * a + PHI * b;
+        float f1 = distanceAtAngle(template, x1, best);
+        float f2 = distanceAtAngle(template, x2, best);
+        if (f1 == Float.POSITIVE_INFINITY && f2 == Float.POSITIVE_INFINITY) return f1;
+        while (b - a > ANGLE_PRECISION) {
+            if (f1 < f2) {
+                b = x2;
+                x2 = x1;
+                f2 = f1;
+                x1 = PHI * a + (1 - PHI) * b;
+                f1 = distanceAtAngle(template, x1, Math.min(best, f2));
+            } else {
+                a = x1;
+                x1 = x2;
+                f1 = f2;
+                x2 = (1 - PHI) * a + PHI * b;
+                f2 = distanceAtAngle(template, x2, Math.min(best, f1));
+            }
+        }
+        return Math.min(f1, f2);
+    }
+
+    /**
+     * Get the average distance between the points of the candidate, rotated
+     * by the given angle, and a template.
+     *
+     * @param limit distance above which there's no need to finish
+     * @return distance, or infinity if it is above the limit
+     */
+    private float distanceAtAngle(float[] template, float angle, float limit) {
+        float cos = (float)Math.cos(angle);
+        float sin = (float)Math.sin(angle);
+        float maxSum = limit * NUM_POINTS;
+        float sum = 0;
+        for (int i = 0; i < 2 * NUM_POINTS; i += 2) {
+            float x = candidate[i] * cos - candidate[i + 1] * sin;
+            float y = candidate[i] * sin + candidate[i + 1] * cos;
+            sum += distance(x, y, template[i], template[i + 1]);
+            if (sum > maxSum) return Float.POSITIVE_INFINITY;
+        }
+        return sum / NUM_POINTS;
+    }
+
+    private static float distance(float x1, float y1, float x2, float y2) {
+        float dx = x2 - x1;
+        float dy = y2 - y1;
+        return (float)Math.sqrt(dx * dx + dy * dy);
+    }
+}
@@ -0,0 +1,419 @@
+/**
+ * ThumbnailCache
+ * Disk-backed store of decoded thumbnails, so photos that were imported
+ * before don't have to be decoded again. Entries are keyed by the content
+ * hash and modification time of the photo, plus the thumbnail size, and the
+ * least recently used entries are deleted once the cache outgrows its limit.
+ * CS 4470 - User Interface Software
+ * apl7@gatech.edu
+ *
+ * @author Alejandrina Patron Lopez
+ * @version 1.0
+ */
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class ThumbnailCache {
+
+    private static final int MAGIC = 0x50415448; // "PATH"
+    private static final int VERSION = 1;
+    private static final String EXTENSION = ".thm";
+    private static final String HASH_FILE = "hashes";
+    private static final float JPEG_QUALITY = 0.85f;
+
+    private File directory;
+    private long maxBytes;
+    private long totalBytes = 0;
+    private boolean opened = false;
+    // Entry sizes in least to most recently used order
+    private LinkedHashMap<String, Long> entries = new LinkedHashMap<String, Long>(16, 0.75f, true);
+    // Content hashes of photos seen before, so unchanged files aren't re-read
+    private Map<String, String> hashes = new HashMap<String, String>();
+
+    /**
+     * Creates a new ThumbnailCache in the default location, the .photoalbum
+     * directory in the user's home directory.
+     */
+    public ThumbnailCache() {
+        this(new File(System.getProperty("user.home"), ".photoalbum" + File.separator + "thumbnails"),
+            256L * 1024 * 1024);
+    }
+
+    /**
+     * Creates a new ThumbnailCache.
+     *
+     * @param directory directory the thumbnails are stored in
+     * @param maxBytes size the cache is allowed to grow to
+     */
+    public ThumbnailCache(File directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Looks up the thumbnail of the given photo.
+     *
+     * @param file photo
+     * @return cached thumbnail, or null if the photo isn't in the cache
+     */
+    public PhotoImporter.ImportedPhoto get(File file) {
+        return read(file, true);
+    }
+
+    /**
+     * Looks up the dimensions of the given photo, without reading its
+     * thumbnail.
+     *
+     * @param file photo
+     * @return cached photo with a null thumbnail, or null if the photo isn't
+     * in the cache
+     */
+    public PhotoImporter.ImportedPhoto getDimensions(File file) {
+        return read(file, false);
+    }
+
+    /**
+     * Reads a cache entry.
+     *
+     * @param file photo
+     * @param withThumbnail false to only read the entry's header
+     * @return cached photo, or null if the photo isn't in the cache
+     */
+    private PhotoImporter.ImportedPhoto read(File file, boolean withThumbnail) {
+        open();
+        String key = keyFor(file);
+        if (key == null || !contains(key)) return null;
+        File entry = new File(directory, key + EXTENSION);
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(entry)));
+            try {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) throw new IOException("Bad entry");
+                int width = in.readInt();
+                int height = in.readInt();
+                BufferedImage thumbnail = null;
+                if (withThumbnail) {
+                    thumbnail = ImageIO.read(in);
+                    if (thumbnail == null) throw new IOException("Bad entry");
+                }
+                entry.setLastModified(System.currentTimeMillis());
+                return new PhotoImporter.ImportedPhoto(file, width, height, thumbnail);
+            } finally {
+                in.close();
+            }
+        } catch (IOException ex) {
+            remove(key); // Unreadable entries are decoded again
+            return null;
+        }
+    }
+
+    /**
+     * Stores the thumbnail of a photo, evicting least recently used
+     * thumbnails if the cache grows past its limit.
+     *
+     * @param photo
+     */
+    public void put(PhotoImporter.ImportedPhoto photo) {
+        open();
+        String key = keyFor(photo.getFile());
+        if (key == null || !directory.isDirectory()) return;
+        File entry = new File(directory, key + EXTENSION);
+        File temp = null;
+        try {
+            // Each put writes its own file, as the same photo may be put by
+            // two threads at once, and only complete entries are renamed
+            temp = File.createTempFile(key, ".tmp", directory);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(photo.getWidth());
+                out.writeInt(photo.getHeight());
+                writeImage(photo.getThumbnail(), out);
+            } finally {
+                out.close();
+            }
+            if (!temp.renameTo(entry)) throw new IOException("Can't write " + entry);
+        } catch (IOException ex) {
+            if (temp != null) temp.delete(); // The thumbnail is simply decoded again next time
+            return;
+        }
+        add(key, entry.length());
+    }
+
+    /**
+     * Check if an entry exists, marking it as the most recently used.
+     *
+     * @param key
+     * @return true if the entry exists
+     */
+    private synchronized boolean contains(String key) {
+        return entries.get(key) != null;
+    }
+
+    /**
+     * Records a new entry, evicting least recently used entries if needed.
+     *
+     * @param key
+     * @param size size of the entry's file
+     */
+    private synchronized void add(String key, long size) {
+        Long previous = entries.put(key, size);
+        if (previous != null) totalBytes -= previous;
+        totalBytes += size;
+        evict();
+    }
+
+    /**
+     * Writes an image in a compact encoding: JPEG for opaque images, and PNG
+     * for images with transparency.
+     */
+    private void writeImage(BufferedImage img, DataOutputStream out) throws IOException {
+        if (img.getTransparency() != Transparency.OPAQUE) {
+            ImageIO.write(img, "png", out);
+            return;
+        }
+        BufferedImage rgb = img;
+        if (img.getType() != BufferedImage.TYPE_INT_RGB && img.getType() != BufferedImage.TYPE_3BYTE_BGR) {
+            rgb = new BufferedImage(img.getWidth(), img.getHeight(), BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = rgb.createGraphics();
+            try {
+                g.drawImage(img, 0, 0, null);
+            } finally {
+                g.dispose();
+            }
+        }
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
+        ImageOutputStream ios = ImageIO.createImageOutputStream(out);
+        try {
+            writer.setOutput(ios);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
+            writer.write(null, new IIOImage(rgb, null, null), param);
+        } finally {
+            writer.dispose();
+            ios.close();
+        }
+    }
+
+    /**
+     * Deletes least recently used entries until the cache fits its limit.
+     */
+    private synchronized void evict() {
+        Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            new File(directory, eldest.getKey() + EXTENSION).delete();
+            totalBytes -= eldest.getValue();
+            it.remove();
+        }
+    }
+
+    /**
+     * Deletes a single entry.
+     *
+     * @param key
+     */
+    private synchronized void remove(String key) {
+        Long size = entries.remove(key);
+        if (size != null) totalBytes -= size;
+        new File(directory, key + EXTENSION).delete();
+    }
+
+    /**
+     * Builds the cache key of a photo: its content hash, modification time
+     * and the size thumbnails are decoded at.
+     *
+     * @return key, or null if the photo can't be read
+     */
+    private String keyFor(File file) {
+        String path = file.getAbsolutePath();
+        String stamp = file.length() + ":" + file.lastModified();
+        String memo = getHash(path);
+        String hash;
+        if (memo != null && memo.startsWith(stamp + ":")) {
+            hash = memo.substring(stamp.length() + 1);
+        } else {
+            try {
+                hash = contentHash(file); // Outside the lock, so imports hash in parallel
+            } catch (IOException ex) {
+                return null;
+            }
+            putHash(path, stamp + ":" + hash);
+        }
+        return hash + "-" + Long.toHexString(file.lastModified()) + "-" + ThumbnailDecoder.THUMBNAIL_SIZE;
+    }
+
+    /**
+     * Computes the SHA-1 hash of a file's content.
+     *
+     * @return hash as a hexadecimal string
+     */
+    private String contentHash(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IOException(ex);
+        }
+        byte[] buffer = new byte[64 * 1024];
+        InputStream in = new FileInputStream(file);
+        try {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        } finally {
+            in.close();
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Reads the entries and the known content hashes from disk. Entries are
+     * ordered by the time they were last used.
+     */
+    private synchronized void open() {
+        if (opened) return;
+        opened = true;
+        directory.mkdirs();
+        File[] files = directory.listFiles();
+        if (files == null) return;
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Long.compare(a.lastModified(), b.lastModified());
+            }
+        });
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(EXTENSION)) {
+                entries.put(name.substring(0, name.length() - EXTENSION.length()), file.length());
+                totalBytes += file.length();
+            } else if (name.endsWith(".tmp")) {
+                file.delete();
+            }
+        }
+        loadHashes();
+        evict();
+    }
+
+    /**
+     * Reads the known content hashes, one "path\tlength:modified:hash" per
+     * line. Later lines override earlier ones, so the file is rewritten once
+     * the overridden lines outnumber the others.
+     */
+    private void loadHashes() {
+        File hashFile = new File(directory, HASH_FILE);
+        if (!hashFile.exists()) return;
+        int lines = 0;
+        try {
+            BufferedReader reader = new BufferedReader(new FileReader(hashFile));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    int tab = line.lastIndexOf('\t');
+                    if (tab > 0) hashes.put(line.substring(0, tab), line.substring(tab + 1));
+                    lines++;
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException ex) {
+            hashes.clear(); // Hashes are recomputed as needed
+            return;
+        }
+        if (lines - hashes.size() > hashes.size()) compactHashes();
+    }
+
+    /**
+     * Rewrites the hash file with a single line per photo, leaving out
+     * photos that no longer exist.
+     */
+    private void compactHashes() {
+        Iterator<String> it = hashes.keySet().iterator();
+        while (it.hasNext()) {
+            if (!new File(it.next()).exists()) it.remove();
+        }
+        File hashFile = new File(directory, HASH_FILE);
+        File temp = new File(directory, HASH_FILE + ".tmp");
+        try {
+            BufferedWriter writer = new BufferedWriter(new FileWriter(temp));
+            try {
+                for (Map.Entry<String, String> memo : hashes.entrySet()) {
+                    writer.write(memo.getKey() + "\t" + memo.getValue());
+                    writer.newLine();
+                }
+            } finally {
+                writer.close();
+            }
+            hashFile.delete(); // Not every platform renames over an existing file
+            if (!temp.renameTo(hashFile)) throw new IOException("Can't write " + hashFile);
+        } catch (IOException ex) {
+            temp.delete(); // Not fatal, hashes are recomputed as needed
+        }
+    }
+
+    /**
+     * Get the last known content hash of a photo.
+     *
+     * @param path
+     * @return "length:modified:hash", or null if the photo wasn't seen before
+     */
+    private synchronized String getHash(String path) {
+        return hashes.get(path);
+    }
+
+    /**
+     * Records the content hash of a photo and appends it to the hash file.
+     *
+     * @param path
+     * @param memo "length:modified:hash"
+     */
+    private synchronized void putHash(String path, String memo) {
+        hashes.put(path, memo);
+        try {
+            BufferedWriter writer = new BufferedWriter(new FileWriter(new File(directory, HASH_FILE), true));
+            try {
+                writer.write(path + "\t" + memo);
+                writer.newLine();
+            } finally {
+                writer.close();
+            }
+        } catch (IOException ex) {
+            // Not fatal, the hash is recomputed next time
+        }
+    }
+}
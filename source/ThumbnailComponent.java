@@ -1,5 +1,8 @@
 /**
  * ThumbnailComponent
+ * Renderer used to stamp photo thumbnails in the ThumbnailGrid and the
+ * MagnetPanel. A single ThumbnailComponent is configured for each thumbnail
+ * right before it is painted.
  * CS 4470 - User Interface Software
  * apl7@gatech.edu
  *
@@ -8,61 +11,123 @@
  */
 
 import javax.swing.*;
+import javax.swing.border.Border;
+import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Image;
 import java.awt.Graphics2D;
-import java.util.Set;
 
 public class ThumbnailComponent extends JComponent {
 
-    private PhotoComponent photoComponent;
+    private static final int MAX_WIDTH = 206;
+    private static final int MAX_HEIGHT = 142;
+    private static final Border EMPTY_BORDER = BorderFactory.createEmptyBorder();
+
+    private Photo photo;
     private Image img;
     private int width;
     private int height;
-    private double scaleFactor = 1.0;
-    private final int MAX_WIDTH = 206;
-    private final int MAX_HEIGHT = 142;
-    private int magnetModeX = 50;
-    private int magnetModeY = 50;
-    private int startX;
-    private int startY;
+    private double zoomFactor = 1.0;
+    private double scaleFactor = 1.0; // Zoom factor times the scale fitting the photo
+    private Border selectedBorder;
 
     /**
      * Creates a new ThumbnailComponent.
      *
-     * @param photoComponent
+     * @param selectedBorder border drawn around the current photo
+     */
+    public ThumbnailComponent(Border selectedBorder) {
+        this.selectedBorder = selectedBorder;
+    }
+
+    /**
+     * Configures the renderer to paint the given photo.
+     *
+     * @param photo
+     * @param img thumbnail, drawn stretched if it doesn't have the thumbnail's
+     * size, or null if it hasn't been loaded yet
+     * @param zoomFactor
+     * @param selected true if the photo is the current photo
      */
-    public ThumbnailComponent(PhotoComponent photoComponent) {
-        this.photoComponent = photoComponent;
-        img = photoComponent.getImage();
-        width = img.getWidth(null);
-        height = img.getHeight(null);
-        scaleFactor = calculateScaleFactor();
+    public void setPhoto(Photo photo, Image img, double zoomFactor, boolean selected) {
+        this.photo = photo;
+        this.img = img;
+        this.width = photo.getWidth();
+        this.height = photo.getHeight();
+        this.zoomFactor = zoomFactor;
+        this.scaleFactor = zoomFactor * calculateScaleFactor(width, height);
+        setBorder(selected ? selectedBorder : EMPTY_BORDER);
     }
 
     @Override
     public void paintComponent(Graphics g) {
         Graphics2D g2 = (Graphics2D)g;
-        g2.drawImage(img, getImageX(), getImageY(), (int)(scaleFactor * width),
-            (int)(scaleFactor * height), null, null);
+        int scaledWidth = (int)(scaleFactor * width);
+        int scaledHeight = (int)(scaleFactor * height);
+        if (scaledWidth <= 0 || scaledHeight <= 0) return;
+        if (img == null) { // Still loading
+            g2.setColor(Color.darkGray);
+            g2.fillRect(getImageX(), getImageY(), scaledWidth, scaledHeight);
+        } else if (img.getWidth(null) == scaledWidth && img.getHeight(null) == scaledHeight) {
+            g2.drawImage(img, getImageX(), getImageY(), null);
+        } else {
+            g2.drawImage(img, getImageX(), getImageY(), scaledWidth, scaledHeight, null);
+        }
     }
 
     @Override
     public Dimension getPreferredSize() {
-        if (width > MAX_WIDTH || height > MAX_HEIGHT) return new Dimension(
-            (int)(scaleFactor * width), (int)(scaleFactor * height));
-        else if (isVertical()) return new Dimension(MAX_HEIGHT, MAX_WIDTH);
-        return new Dimension(MAX_WIDTH, MAX_HEIGHT);
+        return getPreferredSize(photo, zoomFactor);
     }
+
     @Override
     public Dimension getMaximumSize() {
+        return getPreferredSize();
+    }
+
+    /**
+     * Get the size a thumbnail needs to be shown at the given zoom factor.
+     *
+     * @param photo
+     * @param zoomFactor
+     * @return preferred size of the thumbnail
+     */
+    public static Dimension getPreferredSize(Photo photo, double zoomFactor) {
+        return getPreferredSize(photo.getWidth(), photo.getHeight(), zoomFactor);
+    }
+
+    /**
+     * Get the size a thumbnail of a photo of the given size needs to be shown
+     * at the given zoom factor.
+     *
+     * @param width full-resolution width of the photo
+     * @param height full-resolution height of the photo
+     * @param zoomFactor
+     * @return preferred size of the thumbnail
+     */
+    public static Dimension getPreferredSize(int width, int height, double zoomFactor) {
+        double scaleFactor = zoomFactor * calculateScaleFactor(width, height);
         if (width > MAX_WIDTH || height > MAX_HEIGHT) return new Dimension(
             (int)(scaleFactor * width), (int)(scaleFactor * height));
-        else if (isVertical()) return new Dimension(MAX_HEIGHT, MAX_WIDTH);
+        else if (height > width) return new Dimension(MAX_HEIGHT, MAX_WIDTH);
         return new Dimension(MAX_WIDTH, MAX_HEIGHT);
     }
 
+    /**
+     * Get the size the thumbnail's image is drawn at for the given zoom
+     * factor.
+     *
+     * @param photo
+     * @param zoomFactor
+     * @return size of the thumbnail's image
+     */
+    public static Dimension getImageSize(Photo photo, double zoomFactor) {
+        double scaleFactor = zoomFactor * calculateScaleFactor(photo.getWidth(), photo.getHeight());
+        return new Dimension((int)(scaleFactor * photo.getWidth()),
+            (int)(scaleFactor * photo.getHeight()));
+    }
+
     /**
      * Get image's current x coordinate.
      *
@@ -99,8 +164,8 @@ public class ThumbnailComponent extends JComponent {
      *
      * @return photo's scale factor
      */
-    private double calculateScaleFactor() {
-        if (isVertical() && (height > MAX_WIDTH || width > MAX_HEIGHT)) {
+    private static double calculateScaleFactor(int width, int height) {
+        if (height > width && (height > MAX_WIDTH || width > MAX_HEIGHT)) {
             return MAX_HEIGHT / (double)width;
         } else if (width > MAX_WIDTH || height > MAX_HEIGHT) {
             return MAX_WIDTH / (double)width;
@@ -108,84 +173,4 @@ public class ThumbnailComponent extends JComponent {
             return 1.0;
         }
     }
-
-    /**
-     * Updates a photo's scale factor by multiplying it by the zoom factor.
-     *
-     * @param zoomFactor
-     */
-    public void updateScaleFactor(double zoomFactor) {
-        scaleFactor = zoomFactor * calculateScaleFactor();
-    }
-
-    /**
-     * Sets x and y coordinates of thumbnails in relation to magnets.
-     *
-     * @param x
-     * @param y
-     */
-    public void setMagnetModeCoordinates(int x, int y) {
-        this.magnetModeX = x;
-        this.magnetModeY = y;
-    }
-
-    /**
-     * Gets thumbnail's x coordinate to be used when in magnet mode.
-     *
-     * @return magnet mode x
-     */
-    public int getMagnetModeX() {
-        return this.magnetModeX;
-    }
-
-    /**
-     * Gets thumbnail's y coordinate to be used when in magnet mode.
-     *
-     * @return magnet mode y
-     */
-    public int getMagnetModeY() {
-        return this.magnetModeY;
-    }
-
-    /**
-     * Saves thumbnail's starting position to be used for animation.
-     */
-    public void setStartCoordinates() {
-        this.startX = this.getX();
-        this.startY = this.getY();
-    }
-
-    /**
-     * Gets thumbnail's starting x coordinate.
-     *
-     * @return starting x
-     */
-    public int getStartX() {
-        return this.startX;
-    }
-
-    /**
-     * Gets thumbnail's starting y coordinate.
-     *
-     * @return starting y
-     */
-    public int getStartY() {
-        return this.startY;
-    }
-
-    /**
-     * Sets thumbnail's size to be used when in magnet mode.
-     */
-    public void setSizeForMagnets() {
-        this.setSize((int)(scaleFactor * width), (int)(scaleFactor * height));
-    }
-
-    /**
-     * Gets tags associated with the thumbnail.
-     *
-     * @return tags
-     */
-    public Set<String> getTags() {
-        return photoComponent.getTags();
-    }
 }
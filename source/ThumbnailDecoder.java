@@ -0,0 +1,88 @@
+/**
+ * ThumbnailDecoder
+ * Decodes a reduced-resolution copy of a photo straight from disk, using the
+ * ImageReader's source subsampling so the full-resolution raster is never
+ * allocated.
+ * CS 4470 - User Interface Software
+ * apl7@gatech.edu
+ *
+ * @author Alejandrina Patron Lopez
+ * @version 1.0
+ */
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+
+public class ThumbnailDecoder {
+
+    // Longest side of the largest thumbnail shown (206 px at 1.5x zoom)
+    public static final int THUMBNAIL_SIZE = 309;
+
+    private File file;
+    private int width;
+    private int height;
+
+    /**
+     * Creates a new ThumbnailDecoder for the given file.
+     *
+     * @param file photo to be decoded
+     */
+    public ThumbnailDecoder(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Decodes the photo, skipping source pixels so that the longest side of
+     * the result is no smaller than size (or the photo's own size, if it is
+     * smaller than that).
+     *
+     * @param size minimum length of the longest side of the result
+     * @return subsampled photo, or null if no reader supports the file
+     */
+    public BufferedImage decode(int size) throws IOException {
+        ImageInputStream in = ImageIO.createImageInputStream(file);
+        if (in == null) throw new IOException("Can't read " + file.getName());
+        try {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) return null;
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                width = reader.getWidth(0);
+                height = reader.getHeight(0);
+                int subsampling = Math.max(1, Math.max(width, height) / size);
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Get the full-resolution width of the photo. Only valid after decode.
+     *
+     * @return width
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Get the full-resolution height of the photo. Only valid after decode.
+     *
+     * @return height
+     */
+    public int getHeight() {
+        return height;
+    }
+}
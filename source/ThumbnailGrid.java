@@ -0,0 +1,427 @@
+/**
+ * ThumbnailGrid
+ * Shows thumbnails in a grid of equally sized cells. Thumbnails aren't added
+ * as children; cell positions are computed from their index, and only the
+ * cells that intersect the visible area are painted, so scrolling costs the
+ * same no matter how many photos the album has.
+ * CS 4470 - User Interface Software
+ * apl7@gatech.edu
+ *
+ * @author Alejandrina Patron Lopez
+ * @version 1.0
+ */
+
+import javax.swing.*;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.event.MouseEvent;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ThumbnailGrid extends JComponent implements Scrollable {
+
+    private final int GAP = 10;
+
+    private List<Photo> thumbnails;
+    private ThumbnailStore thumbnailStore;
+    private ThumbnailComponent renderer;
+    private int columns; // 0 lays all thumbnails out in a single row
+    private int cellWidth = 1;
+    private int cellHeight = 1;
+    private double zoomFactor = 1.0;
+    // Number of thumbnails of photos of each full-resolution size, so the
+    // cell size at any zoom factor is found without measuring every thumbnail
+    private Map<Dimension, Integer> photoSizes = new HashMap<Dimension, Integer>();
+    private int selectedIndex = -1;
+    private PhotoIdSet selection; // Photos drawn as selected besides the current one
+    private Rectangle lasso; // Rectangle being dragged to select thumbnails, or null
+    private CellRendererPane rendererPane = new CellRendererPane();
+    private Runnable repainter = new Runnable() {
+        @Override
+        public void run() {
+            repaint();
+        }
+    };
+
+    /**
+     * Creates a new ThumbnailGrid.
+     *
+     * @param thumbnails photos whose thumbnails are shown, in order
+     * @param thumbnailStore store the thumbnails are read from
+     * @param renderer component used to paint each thumbnail
+     * @param columns number of columns, or 0 to show a single row
+     */
+    public ThumbnailGrid(List<Photo> thumbnails, ThumbnailStore thumbnailStore,
+            ThumbnailComponent renderer, int columns) {
+        this.thumbnails = thumbnails;
+        this.thumbnailStore = thumbnailStore;
+        this.renderer = renderer;
+        this.columns = columns;
+        this.setBackground(Color.gray);
+        this.setOpaque(true);
+        this.add(rendererPane);
+        ToolTipManager.sharedInstance().registerComponent(this);
+        thumbnailsChanged();
+    }
+
+    /**
+     * Measures all thumbnails again. Changes to only some thumbnails are
+     * cheaper to report through the other methods.
+     */
+    public void thumbnailsChanged() {
+        photoSizes.clear();
+        for (Photo photo : thumbnails) {
+            countPhoto(photo, 1);
+        }
+        updateCellSize();
+        revalidate();
+        repaint();
+    }
+
+    /**
+     * Updates the cell size after some thumbnails were shown and others
+     * hidden, e.g. when the tag filter changed. Only those thumbnails are
+     * measured.
+     *
+     * @param shown photos whose thumbnails are now in the list
+     * @param hidden photos whose thumbnails are no longer in the list
+     */
+    public void thumbnailsChanged(Collection<Photo> shown, Collection<Photo> hidden) {
+        boolean shrunk = false;
+        for (Photo photo : hidden) {
+            shrunk |= uncountPhoto(photo);
+        }
+        for (Photo photo : shown) {
+            countPhoto(photo, 1);
+            growCell(photo);
+        }
+        if (shrunk) updateCellSize();
+        revalidate();
+        repaint();
+    }
+
+    /**
+     * Updates the cell size after thumbnails were appended. Only the new
+     * thumbnails are measured.
+     *
+     * @param first index of the first new thumbnail
+     */
+    public void thumbnailsAdded(int first) {
+        for (int i = first; i < thumbnails.size(); i++) {
+            countPhoto(thumbnails.get(i), 1);
+            growCell(thumbnails.get(i));
+        }
+        revalidate();
+        repaint();
+    }
+
+    /**
+     * Updates the cell size after a thumbnail was inserted. Only the new
+     * thumbnail is measured.
+     *
+     * @param index index of the new thumbnail
+     */
+    public void thumbnailInserted(int index) {
+        if (selectedIndex >= index) selectedIndex++;
+        countPhoto(thumbnails.get(index), 1);
+        growCell(thumbnails.get(index));
+        revalidate();
+        repaint();
+    }
+
+    /**
+     * Updates the cell size after a thumbnail was removed.
+     *
+     * @param index index the photo had
+     * @param removed photo that is no longer in the list
+     */
+    public void thumbnailRemoved(int index, Photo removed) {
+        if (selectedIndex == index) selectedIndex = -1;
+        else if (selectedIndex > index) selectedIndex--;
+        if (uncountPhoto(removed)) updateCellSize();
+        revalidate();
+        repaint();
+    }
+
+    /**
+     * Sets the zoom factor the thumbnails are drawn at.
+     *
+     * @param zoomFactor
+     */
+    public void setZoomFactor(double zoomFactor) {
+        if (this.zoomFactor == zoomFactor) return;
+        this.zoomFactor = zoomFactor;
+        updateCellSize();
+        revalidate();
+        repaint();
+    }
+
+    /**
+     * Counts a thumbnail of a photo in or out of the photo sizes.
+     */
+    private void countPhoto(Photo photo, int delta) {
+        Dimension photoSize = new Dimension(photo.getWidth(), photo.getHeight());
+        Integer count = photoSizes.get(photoSize);
+        int newCount = (count == null ? 0 : count) + delta;
+        if (newCount > 0) photoSizes.put(photoSize, newCount);
+        else photoSizes.remove(photoSize);
+    }
+
+    /**
+     * Counts a thumbnail out of the photo sizes.
+     *
+     * @return true if the cell size may have shrunk
+     */
+    private boolean uncountPhoto(Photo photo) {
+        countPhoto(photo, -1);
+        if (photoSizes.containsKey(new Dimension(photo.getWidth(), photo.getHeight()))) return false;
+        Dimension size = ThumbnailComponent.getPreferredSize(photo, zoomFactor);
+        return size.width >= cellWidth || size.height >= cellHeight;
+    }
+
+    /**
+     * Grows the cells to fit a thumbnail.
+     */
+    private void growCell(Photo photo) {
+        Dimension size = ThumbnailComponent.getPreferredSize(photo, zoomFactor);
+        cellWidth = Math.max(cellWidth, size.width);
+        cellHeight = Math.max(cellHeight, size.height);
+    }
+
+    /**
+     * Recomputes the cell size from the photo sizes, measuring one thumbnail
+     * of each size rather than every thumbnail.
+     */
+    private void updateCellSize() {
+        int width = 1;
+        int height = 1;
+        for (Dimension photoSize : photoSizes.keySet()) {
+            Dimension size = ThumbnailComponent.getPreferredSize(
+                photoSize.width, photoSize.height, zoomFactor);
+            width = Math.max(width, size.width);
+            height = Math.max(height, size.height);
+        }
+        cellWidth = width;
+        cellHeight = height;
+    }
+
+    /**
+     * Sets the thumbnail drawn with the selection border.
+     *
+     * @param index index of the selected photo, or -1
+     */
+    public void setSelectedIndex(int index) {
+        if (selectedIndex >= 0 && selectedIndex < thumbnails.size()) {
+            repaint(getCellBounds(selectedIndex));
+        }
+        selectedIndex = index;
+        if (selectedIndex >= 0 && selectedIndex < thumbnails.size()) {
+            repaint(getCellBounds(selectedIndex));
+        }
+    }
+
+    /**
+     * Sets the photos drawn with the selection border, besides the one at
+     * the selected index. The grid must be repainted when they change.
+     *
+     * @param selection identifiers of the selected photos, or null
+     */
+    public void setSelection(PhotoIdSet selection) {
+        this.selection = selection;
+        repaint();
+    }
+
+    /**
+     * Sets the rectangle being dragged to select thumbnails.
+     *
+     * @param lasso rectangle, or null when done
+     */
+    public void setLasso(Rectangle lasso) {
+        // The outline is drawn one pixel past the rectangle's width and height
+        if (this.lasso != null) {
+            repaint(this.lasso.x, this.lasso.y, this.lasso.width + 1, this.lasso.height + 1);
+        }
+        this.lasso = lasso;
+        if (lasso != null) repaint(lasso.x, lasso.y, lasso.width + 1, lasso.height + 1);
+    }
+
+    /**
+     * Sets the number of columns the thumbnails are laid out in.
+     *
+     * @param columns number of columns, or 0 to show a single row
+     */
+    public void setColumns(int columns) {
+        if (this.columns == columns) return;
+        this.columns = columns;
+        revalidate();
+        repaint();
+    }
+
+    /**
+     * Get the number of columns the thumbnails are laid out in.
+     */
+    private int getColumnCount() {
+        if (columns == 0) return Math.max(1, thumbnails.size());
+        return columns;
+    }
+
+    /**
+     * Get the number of rows needed for all thumbnails.
+     */
+    private int getRowCount() {
+        if (columns == 0) return 1;
+        return (thumbnails.size() + columns - 1) / columns;
+    }
+
+    /**
+     * Get the x coordinate of the first column. The grid is centered when it
+     * is narrower than the component.
+     */
+    private int getOriginX() {
+        return Math.max(GAP, (getWidth() - getPreferredSize().width) / 2 + GAP);
+    }
+
+    /**
+     * Get the bounds of the cell the thumbnail at the given index is drawn in.
+     *
+     * @param index
+     * @return cell bounds
+     */
+    public Rectangle getCellBounds(int index) {
+        int column = index % getColumnCount();
+        int row = index / getColumnCount();
+        return new Rectangle(getOriginX() + column * (cellWidth + GAP),
+            GAP + row * (cellHeight + GAP), cellWidth, cellHeight);
+    }
+
+    /**
+     * Finds the thumbnail drawn at the given point.
+     *
+     * @param p
+     * @return index of the thumbnail, or -1 if p isn't on a thumbnail
+     */
+    public int indexAt(Point p) {
+        int x = p.x - getOriginX();
+        int y = p.y - GAP;
+        if (x < 0 || y < 0) return -1;
+        int column = x / (cellWidth + GAP);
+        int row = y / (cellHeight + GAP);
+        // Points in the gaps between cells don't belong to any thumbnail
+        if (x % (cellWidth + GAP) >= cellWidth || y % (cellHeight + GAP) >= cellHeight) return -1;
+        if (column >= getColumnCount() || row >= getRowCount()) return -1;
+        int index = row * getColumnCount() + column;
+        return index < thumbnails.size() ? index : -1;
+    }
+
+    /**
+     * Finds the thumbnails whose cells intersect a rectangle. Only the rows
+     * and columns the rectangle covers are looked at.
+     *
+     * @param r
+     * @return indices of the thumbnails, in order
+     */
+    public int[] indicesIn(Rectangle r) {
+        if (thumbnails.isEmpty()) return new int[0];
+        int firstRow = Math.max(0, (r.y - GAP) / (cellHeight + GAP));
+        int lastRow = Math.min(getRowCount() - 1, (r.y + r.height) / (cellHeight + GAP));
+        int firstColumn = Math.max(0, (r.x - getOriginX()) / (cellWidth + GAP));
+        int lastColumn = Math.min(getColumnCount() - 1,
+            (r.x + r.width - getOriginX()) / (cellWidth + GAP));
+        if (firstRow > lastRow || firstColumn > lastColumn) return new int[0];
+        int[] indices = new int[(lastRow - firstRow + 1) * (lastColumn - firstColumn + 1)];
+        int count = 0;
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                int index = row * getColumnCount() + column;
+                if (index >= thumbnails.size()) break;
+                if (getCellBounds(index).intersects(r)) indices[count++] = index;
+            }
+        }
+        return Arrays.copyOf(indices, count);
+    }
+
+    @Override
+    public String getToolTipText(MouseEvent e) {
+        int index = indexAt(e.getPoint());
+        return index >= 0 ? thumbnails.get(index).getFile().getName() : null;
+    }
+
+    @Override
+    public void paintComponent(Graphics g) {
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) clip = new Rectangle(0, 0, getWidth(), getHeight());
+        g.setColor(getBackground());
+        g.fillRect(clip.x, clip.y, clip.width, clip.height);
+        if (thumbnails.isEmpty()) return;
+        thumbnailStore.startPaint();
+
+        // Only the rows and columns intersecting the clip are painted
+        int firstRow = Math.max(0, (clip.y - GAP) / (cellHeight + GAP));
+        int lastRow = Math.min(getRowCount() - 1, (clip.y + clip.height) / (cellHeight + GAP));
+        int firstColumn = Math.max(0, (clip.x - getOriginX()) / (cellWidth + GAP));
+        int lastColumn = Math.min(getColumnCount() - 1,
+            (clip.x + clip.width - getOriginX()) / (cellWidth + GAP));
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                int index = row * getColumnCount() + column;
+                if (index >= thumbnails.size()) break;
+                Rectangle cell = getCellBounds(index);
+                Photo photo = thumbnails.get(index);
+                Dimension size = ThumbnailComponent.getImageSize(photo, zoomFactor);
+                boolean selected = index == selectedIndex
+                    || (selection != null && selection.contains(photo.getId()));
+                renderer.setPhoto(photo, thumbnailStore.get(photo, size.width, size.height,
+                    getGraphicsConfiguration(), repainter), zoomFactor, selected);
+                rendererPane.paintComponent(g, renderer, this,
+                    cell.x, cell.y, cell.width, cell.height, true);
+            }
+        }
+        if (lasso != null) {
+            g.setColor(Color.yellow);
+            g.drawRect(lasso.x, lasso.y, lasso.width, lasso.height);
+        }
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        return new Dimension(GAP + getColumnCount() * (cellWidth + GAP),
+            GAP + getRowCount() * (cellHeight + GAP));
+    }
+
+    @Override
+    public Dimension getPreferredScrollableViewportSize() {
+        if (columns == 0) return new Dimension(getPreferredSize().width, cellHeight + 2 * GAP);
+        return getPreferredSize();
+    }
+
+    @Override
+    public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+        if (orientation == SwingConstants.VERTICAL) return (cellHeight + GAP) / 4;
+        return (cellWidth + GAP) / 4;
+    }
+
+    @Override
+    public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+        if (orientation == SwingConstants.VERTICAL) return Math.max(1, visibleRect.height - cellHeight);
+        return Math.max(1, visibleRect.width - cellWidth);
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportWidth() {
+        // Stretch to the viewport when it is wider than the grid, so it can be centered
+        return getParent() instanceof JViewport
+            && getParent().getWidth() > getPreferredSize().width;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportHeight() {
+        return getParent() instanceof JViewport
+            && getParent().getHeight() > getPreferredSize().height;
+    }
+}
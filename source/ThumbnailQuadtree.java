@@ -0,0 +1,173 @@
+/**
+ * ThumbnailQuadtree
+ * Quadtree over the bounds of the thumbnails in magnet mode, where they can
+ * be anywhere and overlap each other. Each thumbnail is kept in the smallest
+ * node that contains it completely.
+ * CS 4470 - User Interface Software
+ * apl7@gatech.edu
+ *
+ * @author Alejandrina Patron Lopez
+ * @version 1.0
+ */
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+
+public class ThumbnailQuadtree {
+
+    private final int MAX_DEPTH = 12;
+    private final int SPLIT_SIZE = 8;
+
+    private Node root;
+    private Rectangle[] bounds;
+
+    /**
+     * Builds a quadtree over the given thumbnail bounds.
+     *
+     * @param bounds bounds of each thumbnail, indexed like the photos
+     */
+    public ThumbnailQuadtree(Rectangle[] bounds) {
+        this.bounds = bounds;
+        Rectangle world = new Rectangle();
+        for (int i = 0; i < bounds.length; i++) {
+            if (i == 0) world.setBounds(bounds[i]);
+            else world.add(bounds[i]);
+        }
+        root = new Node(world, 0);
+        for (int i = 0; i < bounds.length; i++) {
+            root.insert(i);
+        }
+    }
+
+    /**
+     * Finds the topmost thumbnail containing the given point. Thumbnails
+     * with lower indices are drawn on top.
+     *
+     * @param x
+     * @param y
+     * @return index of the thumbnail, or -1 if no thumbnail contains the point
+     */
+    public int indexAt(int x, int y) {
+        int found = -1;
+        Node node = root;
+        while (node != null && node.area.contains(x, y)) {
+            for (int j = 0; j < node.size; j++) {
+                int i = node.items[j];
+                if ((found < 0 || i < found) && bounds[i].contains(x, y)) found = i;
+            }
+            Node next = null;
+            if (node.children != null) {
+                for (Node child : node.children) {
+                    if (child.area.contains(x, y)) {
+                        next = child;
+                        break;
+                    }
+                }
+            }
+            node = next;
+        }
+        return found;
+    }
+
+    /**
+     * Finds the thumbnails intersecting the given area.
+     *
+     * @param area
+     * @return indices of the thumbnails, in ascending order
+     */
+    public int[] query(Rectangle area) {
+        IntList result = new IntList();
+        root.query(area, result);
+        int[] indices = Arrays.copyOf(result.items, result.size);
+        Arrays.sort(indices);
+        return indices;
+    }
+
+    /**
+     * A region of the tree, holding the thumbnails that don't fit in
+     * any of its quadrants.
+     */
+    private class Node {
+
+        private Rectangle area;
+        private int depth;
+        private int[] items = new int[4];
+        private int size = 0;
+        private Node[] children;
+
+        public Node(Rectangle area, int depth) {
+            this.area = area;
+            this.depth = depth;
+        }
+
+        private void insert(int i) {
+            if (children != null) {
+                for (Node child : children) {
+                    if (child.area.contains(bounds[i])) {
+                        child.insert(i);
+                        return;
+                    }
+                }
+            }
+            add(i);
+            if (children == null && size > SPLIT_SIZE && depth < MAX_DEPTH
+                && area.width > 1 && area.height > 1) {
+                split();
+            }
+        }
+
+        private void add(int i) {
+            if (size == items.length) items = Arrays.copyOf(items, 2 * size);
+            items[size++] = i;
+        }
+
+        /**
+         * Creates the quadrants and moves down the thumbnails that fit in
+         * one of them.
+         */
+        private void split() {
+            int halfWidth = area.width / 2;
+            int halfHeight = area.height / 2;
+            children = new Node[] {
+                new Node(new Rectangle(area.x, area.y, halfWidth, halfHeight), depth + 1),
+                new Node(new Rectangle(area.x + halfWidth, area.y,
+                    area.width - halfWidth, halfHeight), depth + 1),
+                new Node(new Rectangle(area.x, area.y + halfHeight,
+                    halfWidth, area.height - halfHeight), depth + 1),
+                new Node(new Rectangle(area.x + halfWidth, area.y + halfHeight,
+                    area.width - halfWidth, area.height - halfHeight), depth + 1)
+            };
+            int[] old = Arrays.copyOf(items, size);
+            size = 0;
+            for (int i : old) {
+                insert(i);
+            }
+        }
+
+        private void query(Rectangle queried, IntList result) {
+            if (!area.intersects(queried)) return;
+            for (int j = 0; j < size; j++) {
+                if (bounds[items[j]].intersects(queried)) result.add(items[j]);
+            }
+            if (children != null) {
+                for (Node child : children) {
+                    child.query(queried, result);
+                }
+            }
+        }
+    }
+
+    /**
+     * Growable list of indices.
+     */
+    private static class IntList {
+
+        private int[] items = new int[16];
+        private int size = 0;
+
+        private void add(int i) {
+            if (size == items.length) items = Arrays.copyOf(items, 2 * size);
+            items[size++] = i;
+        }
+    }
+}
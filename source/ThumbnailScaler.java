@@ -0,0 +1,71 @@
+/**
+ * ThumbnailScaler
+ * Produces pre-scaled thumbnail rasters, so thumbnails only have to copy
+ * pixels when they are painted.
+ * CS 4470 - User Interface Software
+ * apl7@gatech.edu
+ *
+ * @author Alejandrina Patron Lopez
+ * @version 1.0
+ */
+
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+
+public final class ThumbnailScaler {
+
+    private ThumbnailScaler() {}
+
+    /**
+     * Scales the source image to the given size. Large reductions are done in
+     * steps of at most one half, which keeps bilinear filtering from skipping
+     * source pixels.
+     *
+     * @param source image to be scaled
+     * @param width width of the scaled image
+     * @param height height of the scaled image
+     * @param gc configuration of the device the image will be drawn on, or
+     * null to use the default screen
+     * @return scaled image, compatible with the device
+     */
+    public static BufferedImage scale(BufferedImage source, int width, int height,
+            GraphicsConfiguration gc) {
+        BufferedImage current = source;
+        int currWidth = source.getWidth();
+        int currHeight = source.getHeight();
+        do {
+            currWidth = currWidth / 2 > width ? currWidth / 2 : width;
+            currHeight = currHeight / 2 > height ? currHeight / 2 : height;
+            BufferedImage next;
+            if (currWidth == width && currHeight == height) {
+                next = createCompatibleImage(width, height, source.getTransparency(), gc);
+            } else {
+                next = new BufferedImage(currWidth, currHeight, BufferedImage.TYPE_INT_ARGB);
+            }
+            Graphics2D g2 = next.createGraphics();
+            g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g2.drawImage(current, 0, 0, currWidth, currHeight, null);
+            g2.dispose();
+            current = next;
+        } while (currWidth != width || currHeight != height);
+        return current;
+    }
+
+    /**
+     * Creates an image in the device's native pixel layout, so drawing it
+     * doesn't require a format conversion.
+     */
+    private static BufferedImage createCompatibleImage(int width, int height,
+            int transparency, GraphicsConfiguration gc) {
+        if (gc == null && !GraphicsEnvironment.isHeadless()) {
+            gc = GraphicsEnvironment.getLocalGraphicsEnvironment()
+                .getDefaultScreenDevice().getDefaultConfiguration();
+        }
+        if (gc == null) return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        return gc.createCompatibleImage(width, height, transparency);
+    }
+}
@@ -0,0 +1,289 @@
+/**
+ * ThumbnailStore
+ * Keeps the thumbnails of recently shown photos in memory within a fixed
+ * budget. Each photo has a base thumbnail, read from the ThumbnailCache or
+ * decoded by the ThumbnailDecoder, and a copy pre-scaled to the size it was
+ * last drawn at. Both are produced on background threads.
+ * CS 4470 - User Interface Software
+ * apl7@gatech.edu
+ *
+ * @author Alejandrina Patron Lopez
+ * @version 1.0
+ */
+
+import javax.swing.SwingUtilities;
+import java.awt.GraphicsConfiguration;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+public class ThumbnailStore {
+
+    private ThumbnailCache thumbnailCache;
+    private long budget;
+    private long residentBytes = 0;
+    // Thumbnails by photo id, in least to most recently used order
+    private LinkedHashMap<Integer, Entry> entries = new LinkedHashMap<Integer, Entry>(16, 0.75f, true);
+    // Entries requested by the latest two paints are kept even over budget,
+    // or loading one visible thumbnail would evict another and the paints it
+    // triggers would never end. The previous paint's entries are kept too,
+    // as loads finishing during a paint mustn't evict what it is yet to draw
+    private int paint = 0;
+    private ExecutorService workers;
+
+    /**
+     * Creates a new ThumbnailStore allowed to use 64 MB.
+     *
+     * @param thumbnailCache on-disk cache thumbnails are read from and
+     * written to
+     */
+    public ThumbnailStore(ThumbnailCache thumbnailCache) {
+        this(thumbnailCache, 64L * 1024 * 1024);
+    }
+
+    /**
+     * Creates a new ThumbnailStore.
+     *
+     * @param thumbnailCache on-disk cache thumbnails are read from and
+     * written to
+     * @param budget number of bytes thumbnails may occupy
+     */
+    public ThumbnailStore(ThumbnailCache thumbnailCache, long budget) {
+        this.thumbnailCache = thumbnailCache;
+        this.budget = budget;
+        workers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "ThumbnailStore");
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.NORM_PRIORITY - 1);
+                    return thread;
+                }
+            });
+    }
+
+    /**
+     * Starts a paint of thumbnails. Thumbnails requested from now on aren't
+     * evicted until the paint after the next one starts, so everything a
+     * paint shows fits even when it exceeds the budget.
+     */
+    public synchronized void startPaint() {
+        paint++;
+    }
+
+    /**
+     * Get a photo's thumbnail to be drawn at the given size. If there is no
+     * thumbnail of exactly that size, one is produced in the background, and
+     * the closest thumbnail in memory is returned to be stretched meanwhile.
+     *
+     * @param photo
+     * @param width width the thumbnail is drawn at
+     * @param height height the thumbnail is drawn at
+     * @param gc configuration of the device the thumbnail is drawn on
+     * @param whenLoaded run on the Event Dispatch Thread once the thumbnail
+     * of the requested size is ready
+     * @return thumbnail, which may have a different size, or null if none of
+     * the photo's thumbnails are in memory
+     */
+    public synchronized BufferedImage get(Photo photo, int width, int height,
+            GraphicsConfiguration gc, Runnable whenLoaded) {
+        if (width <= 0 || height <= 0) return null;
+        Entry entry = entries.get(photo.getId());
+        if (entry == null) {
+            entry = new Entry();
+            entries.put(photo.getId(), entry);
+        }
+        entry.paint = paint;
+        BufferedImage scaled = entry.scaled;
+        if (entry.unreadable || (scaled != null && scaled.getWidth() == width
+            && scaled.getHeight() == height)) {
+            return scaled;
+        }
+        if (!entry.callbacks.contains(whenLoaded)) entry.callbacks.add(whenLoaded);
+        if (entry.pending == null || entry.pendingWidth != width || entry.pendingHeight != height) {
+            // A request for a newer size replaces the one still queued
+            if (entry.pending != null) entry.pending.cancel(false);
+            entry.pendingWidth = width;
+            entry.pendingHeight = height;
+            entry.pending = workers.submit(new Load(photo, width, height, gc));
+        }
+        return scaled != null ? scaled : entry.base;
+    }
+
+    /**
+     * Get a photo's base thumbnail if it is in memory, without loading it.
+     *
+     * @param photo
+     * @return base thumbnail, or null
+     */
+    public synchronized BufferedImage getBase(Photo photo) {
+        Entry entry = entries.get(photo.getId());
+        return entry != null ? entry.base : null;
+    }
+
+    /**
+     * Stores a base thumbnail that was already decoded, e.g. during import.
+     *
+     * @param photo
+     * @param base
+     */
+    public synchronized void put(Photo photo, BufferedImage base) {
+        Entry entry = entries.get(photo.getId());
+        if (entry == null) {
+            entry = new Entry();
+            entries.put(photo.getId(), entry);
+        }
+        setBase(entry, base);
+        evict();
+    }
+
+    /**
+     * Removes a photo's thumbnails from memory, e.g. when it is deleted.
+     *
+     * @param photo
+     */
+    public synchronized void remove(Photo photo) {
+        Entry entry = entries.remove(photo.getId());
+        if (entry == null) return;
+        if (entry.pending != null) entry.pending.cancel(false);
+        residentBytes -= entry.size();
+    }
+
+    /**
+     * Replaces an entry's base thumbnail, keeping the byte count up to date.
+     */
+    private void setBase(Entry entry, BufferedImage base) {
+        residentBytes -= entry.size();
+        entry.base = base;
+        residentBytes += entry.size();
+    }
+
+    /**
+     * Stores the result of a background load and notifies the components
+     * waiting for it.
+     */
+    private synchronized void loaded(Photo photo, BufferedImage base, BufferedImage scaled) {
+        Entry entry = entries.get(photo.getId());
+        if (entry == null) {
+            entry = new Entry();
+            entries.put(photo.getId(), entry);
+        }
+        residentBytes -= entry.size();
+        if (base != null) entry.base = base;
+        if (scaled != null) entry.scaled = scaled;
+        else entry.unreadable = true; // Don't retry on every repaint
+        residentBytes += entry.size();
+        boolean current = scaled != null && scaled.getWidth() == entry.pendingWidth
+            && scaled.getHeight() == entry.pendingHeight;
+        if (current || scaled == null) {
+            entry.pending = null;
+            for (Runnable whenLoaded : entry.callbacks) {
+                SwingUtilities.invokeLater(whenLoaded);
+            }
+            entry.callbacks.clear();
+        }
+        evict();
+    }
+
+    /**
+     * Evicts least recently used thumbnails until the budget is met. The
+     * most recently used thumbnail, and those requested by the latest two
+     * paints, are always kept.
+     */
+    private void evict() {
+        Iterator<Map.Entry<Integer, Entry>> it = entries.entrySet().iterator();
+        while (residentBytes > budget && entries.size() > 1 && it.hasNext()) {
+            Entry eldest = it.next().getValue();
+            if (eldest.paint >= paint - 1) continue;
+            if (eldest.pending != null) eldest.pending.cancel(false);
+            residentBytes -= eldest.size();
+            it.remove();
+        }
+    }
+
+    /**
+     * Reads or decodes a photo's base thumbnail if needed, then scales it.
+     */
+    private class Load implements Runnable {
+
+        private Photo photo;
+        private int width;
+        private int height;
+        private GraphicsConfiguration gc;
+
+        public Load(Photo photo, int width, int height, GraphicsConfiguration gc) {
+            this.photo = photo;
+            this.width = width;
+            this.height = height;
+            this.gc = gc;
+        }
+
+        @Override
+        public void run() {
+            BufferedImage base = getBase(photo);
+            boolean decoded = false;
+            if (base == null) {
+                base = readBase();
+                decoded = true;
+            }
+            BufferedImage scaled = null;
+            if (base != null) scaled = ThumbnailScaler.scale(base, width, height, gc);
+            loaded(photo, decoded ? base : null, scaled);
+        }
+
+        /**
+         * Reads the base thumbnail from the ThumbnailCache, decoding and
+         * caching it if it isn't there.
+         *
+         * @return base thumbnail, or null if the photo can't be read
+         */
+        private BufferedImage readBase() {
+            PhotoImporter.ImportedPhoto cached = thumbnailCache.get(photo.getFile());
+            if (cached != null) return cached.getThumbnail();
+            try {
+                ThumbnailDecoder decoder = new ThumbnailDecoder(photo.getFile());
+                BufferedImage base = decoder.decode(ThumbnailDecoder.THUMBNAIL_SIZE);
+                if (base != null) {
+                    thumbnailCache.put(new PhotoImporter.ImportedPhoto(photo.getFile(),
+                        decoder.getWidth(), decoder.getHeight(), base));
+                }
+                return base;
+            } catch (IOException ex) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * A photo's thumbnails, and the pending request for a new size.
+     */
+    private static class Entry {
+
+        private BufferedImage base;
+        private BufferedImage scaled;
+        private Future<?> pending;
+        private int pendingWidth, pendingHeight;
+        private int paint = -2; // Latest paint the entry was requested by
+        private boolean unreadable = false;
+        private List<Runnable> callbacks = new ArrayList<Runnable>(1);
+
+        /**
+         * Estimates the number of bytes used by the entry's pixels.
+         */
+        private long size() {
+            long size = 0;
+            if (base != null) size += 4L * base.getWidth() * base.getHeight();
+            if (scaled != null) size += 4L * scaled.getWidth() * scaled.getHeight();
+            return size;
+        }
+    }
+}